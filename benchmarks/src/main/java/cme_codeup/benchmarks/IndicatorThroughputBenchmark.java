@@ -0,0 +1,83 @@
+package cme_codeup.benchmarks;
+
+import cme_codeup.DEMA;
+import cme_codeup.EMA;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Per-tick throughput of EMA.addData and DEMA.addData, scalar calls and the batch entry point.
+// Scores are ticks per microsecond.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IndicatorThroughputBenchmark {
+
+    private static final int TICKS = 1024;
+
+    private final double[] prices = new double[TICKS];
+    private final double[] means = new double[TICKS];
+    private EMA ema;
+    private DEMA dema;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(11);
+        for (int i = 0; i < TICKS; i++) {
+            prices[i] = 5000 + random.nextGaussian();
+        }
+        ema = new EMA(20);
+        dema = new DEMA(20);
+        for (int i = 0; i < 100; i++) {
+            ema.addData(prices[i]);
+            dema.addData(prices[i]);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public double emaAddData() {
+        for (int i = 0; i < TICKS; i++) {
+            ema.addData(prices[i]);
+        }
+        return ema.getMean();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public double emaAddDataBatch() {
+        ema.addData(prices, 0, TICKS, means);
+        return means[TICKS - 1];
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public double demaAddData() {
+        for (int i = 0; i < TICKS; i++) {
+            dema.addData(prices[i]);
+        }
+        return dema.getMean();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public double demaAddDataBatch() {
+        dema.addData(prices, 0, TICKS, means);
+        return means[TICKS - 1];
+    }
+}
@@ -0,0 +1,72 @@
+package cme_codeup.benchmarks;
+
+import cme_codeup.RANSACRegressor;
+import cme_codeup.RANSACRegressorNaive;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// One full fit of RANSACRegressor (ring buffer window) against RANSACRegressorNaive (array input)
+// with the same seed, trial budget and threshold, across window sizes and outlier rates.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RansacFitBenchmark {
+
+    private static final int MAX_TRIALS = 100;
+    private static final double THRESHOLD = 1.0;
+
+    @Param({"50", "200", "1000"})
+    public int windowSize;
+
+    @Param({"0.0", "0.2", "0.4"})
+    public double outlierRate;
+
+    private double[] y;
+    private RANSACRegressor regressor;
+    private RANSACRegressorNaive naive;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(5);
+        y = new double[windowSize];
+        for (int i = 0; i < windowSize; i++) {
+            double outlier = random.nextDouble() < outlierRate ? 20 * random.nextGaussian() : 0;
+            y[i] = 5000 + 0.25 * i + 0.3 * random.nextGaussian() + outlier;
+        }
+        regressor = new RANSACRegressor(MAX_TRIALS, THRESHOLD, windowSize);
+        regressor.setSeed(1);
+        for (double v : y) {
+            regressor.append(v);
+        }
+        naive = new RANSACRegressorNaive(MAX_TRIALS, THRESHOLD);
+        naive.setSeed(1);
+    }
+
+    @Benchmark
+    public double[] regressorFit() {
+        regressor.fit();
+        return regressor.getParams();
+    }
+
+    @Benchmark
+    public double[] naiveFit() {
+        naive.fit(y);
+        return naive.next(1);
+    }
+}
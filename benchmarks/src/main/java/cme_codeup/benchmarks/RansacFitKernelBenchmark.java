@@ -0,0 +1,58 @@
+package cme_codeup.benchmarks;
+
+import cme_codeup.RANSACRegressor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// RANSACRegressor.fit() with a fixed trial count, closed-form kernel against the commons-math
+// reference solver. Scores are trials per second (one operation = one trial).
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RansacFitKernelBenchmark {
+
+    private static final int TRIALS = 200;
+
+    @Param({"closedForm", "commonsMath"})
+    public String solver;
+
+    @Param({"50", "500"})
+    public int windowSize;
+
+    private RANSACRegressor regressor;
+
+    @Setup
+    public void setup() {
+        regressor = new RANSACRegressor(TRIALS, 1.0, windowSize);
+        regressor.setReferenceSolver("commonsMath".equals(solver));
+        Random random = new Random(7);
+        for (int i = 0; i < windowSize; i++) {
+            double outlier = random.nextDouble() < 0.2 ? 10 * random.nextGaussian() : 0;
+            regressor.append(5000 + 0.25 * i + random.nextGaussian() * 0.5 + outlier);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TRIALS)
+    public double[] fit() {
+        regressor.fit();
+        return regressor.getParams();
+    }
+}
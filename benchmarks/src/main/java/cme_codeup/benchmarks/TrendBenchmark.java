@@ -0,0 +1,100 @@
+package cme_codeup.benchmarks;
+
+import cme_codeup.ConcurrentDEMATrend;
+import cme_codeup.ConcurrentEMATrend;
+import cme_codeup.DEMATrend;
+import cme_codeup.EMATrend;
+import cme_codeup.TrendResult;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Uncontended add and read on a single thread. TrendContentionBenchmark covers the contended case.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrendBenchmark {
+
+    private EMATrend emaTrend;
+    private DEMATrend demaTrend;
+    private ConcurrentEMATrend concurrentEmaTrend;
+    private ConcurrentDEMATrend concurrentDemaTrend;
+    private final TrendResult result = new TrendResult();
+    private int tick;
+
+    @Setup
+    public void setup() {
+        emaTrend = new EMATrend(50, 10);
+        demaTrend = new DEMATrend(50, 10);
+        concurrentEmaTrend = new ConcurrentEMATrend(50, 10);
+        concurrentDemaTrend = new ConcurrentDEMATrend(50, 10);
+        for (int i = 0; i < 100; i++) {
+            emaTrend.add(1000 + i);
+            demaTrend.add(1000 + i);
+            concurrentEmaTrend.add(1000 + i);
+            concurrentDemaTrend.add(1000 + i);
+        }
+    }
+
+    private int nextPrice() {
+        return 1000 + (tick++ & 127);
+    }
+
+    @Benchmark
+    public void emaTrendAdd() {
+        emaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    public EMATrend.ETrend emaTrendRead() {
+        return emaTrend.getTrendRatio();
+    }
+
+    @Benchmark
+    public TrendResult emaTrendReadResult() {
+        return emaTrend.getTrend(result);
+    }
+
+    @Benchmark
+    public void demaTrendAdd() {
+        demaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    public DEMATrend.ETrend demaTrendRead() {
+        return demaTrend.getTrendRatio();
+    }
+
+    @Benchmark
+    public void concurrentEmaTrendAdd() {
+        concurrentEmaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    public TrendResult concurrentEmaTrendRead() {
+        return concurrentEmaTrend.getTrend(result);
+    }
+
+    @Benchmark
+    public void concurrentDemaTrendAdd() {
+        concurrentDemaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    public TrendResult concurrentDemaTrendRead() {
+        return concurrentDemaTrend.getTrend(result);
+    }
+}
@@ -0,0 +1,113 @@
+package cme_codeup.benchmarks;
+
+import cme_codeup.ConcurrentDEMATrend;
+import cme_codeup.ConcurrentEMATrend;
+import cme_codeup.DEMATrend;
+import cme_codeup.EMATrend;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// One feed-handler thread adding ticks against three strategy threads polling the trend. The
+// cached groups run EMATrend/DEMATrend, whose adds take the monitor and whose reads cost a volatile
+// read of the cached ratio until the next tick; the seqlock groups run their concurrent counterparts.
+@State(Scope.Group)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TrendContentionBenchmark {
+
+    private EMATrend emaTrend;
+    private DEMATrend demaTrend;
+    private ConcurrentEMATrend concurrentEmaTrend;
+    private ConcurrentDEMATrend concurrentDemaTrend;
+    private int tick;
+
+    @Setup
+    public void setup() {
+        emaTrend = new EMATrend(50, 10);
+        demaTrend = new DEMATrend(50, 10);
+        concurrentEmaTrend = new ConcurrentEMATrend(50, 10);
+        concurrentDemaTrend = new ConcurrentDEMATrend(50, 10);
+        for (int i = 0; i < 100; i++) {
+            emaTrend.add(1000 + i);
+            demaTrend.add(1000 + i);
+            concurrentEmaTrend.add(1000 + i);
+            concurrentDemaTrend.add(1000 + i);
+        }
+    }
+
+    private int nextPrice() {
+        return 1000 + (tick++ & 127);
+    }
+
+    @Benchmark
+    @Group("emaCached")
+    @GroupThreads(1)
+    public void emaCachedAdd() {
+        emaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    @Group("emaCached")
+    @GroupThreads(3)
+    public EMATrend.ETrend emaCachedRead() {
+        return emaTrend.getTrendRatio();
+    }
+
+    @Benchmark
+    @Group("emaSeqlock")
+    @GroupThreads(1)
+    public void emaSeqlockAdd() {
+        concurrentEmaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    @Group("emaSeqlock")
+    @GroupThreads(3)
+    public EMATrend.ETrend emaSeqlockRead() {
+        return concurrentEmaTrend.getTrendRatio();
+    }
+
+    @Benchmark
+    @Group("demaCached")
+    @GroupThreads(1)
+    public void demaCachedAdd() {
+        demaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    @Group("demaCached")
+    @GroupThreads(3)
+    public DEMATrend.ETrend demaCachedRead() {
+        return demaTrend.getTrendRatio();
+    }
+
+    @Benchmark
+    @Group("demaSeqlock")
+    @GroupThreads(1)
+    public void demaSeqlockAdd() {
+        concurrentDemaTrend.add(nextPrice());
+    }
+
+    @Benchmark
+    @Group("demaSeqlock")
+    @GroupThreads(3)
+    public DEMATrend.ETrend demaSeqlockRead() {
+        return concurrentDemaTrend.getTrendRatio();
+    }
+}
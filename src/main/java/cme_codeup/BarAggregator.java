@@ -0,0 +1,77 @@
+package cme_codeup;
+
+// Builds fixed-length time bars (open, high, low, close, volume, VWAP) from a tick stream and
+// hands each finished bar to a BarSink. Bars are aligned to multiples of barNanos since the epoch;
+// a bar is emitted when the first tick of a later bar arrives, or on flush(). Intervals without
+// ticks produce no bar. A tick stamped before the open bar (out of order) is added to the open bar.
+// All state is primitive fields, so a tick never allocates.
+public class BarAggregator {
+
+    @FunctionalInterface
+    public interface BarSink {
+        void onBar(long barStartNanos, double open, double high, double low, double close, double volume, double vwap);
+    }
+
+    private final long barNanos;
+    private final BarSink sink;
+
+    private boolean open;
+    private long barStart;
+    private double openPrice;
+    private double high;
+    private double low;
+    private double close;
+    private double volume;
+    private double notional;
+    private long bars;
+
+    public BarAggregator(long barNanos, BarSink sink) {
+        if (barNanos <= 0) {
+            throw new IllegalArgumentException("barNanos must be positive");
+        }
+        this.barNanos = barNanos;
+        this.sink = sink;
+    }
+
+    public void onTick(long timestampNanos, double price, double size) {
+        long start = timestampNanos - Math.floorMod(timestampNanos, barNanos);
+        if (open && start > barStart) {
+            flush();
+        }
+        if (!open) {
+            open = true;
+            barStart = start;
+            openPrice = price;
+            high = price;
+            low = price;
+            volume = 0;
+            notional = 0;
+        } else {
+            high = Math.max(high, price);
+            low = Math.min(low, price);
+        }
+        close = price;
+        volume += size;
+        notional += price * size;
+    }
+
+    // emits the open bar, if any
+    public void flush() {
+        if (!open) {
+            return;
+        }
+        open = false;
+        bars++;
+        // VWAP falls back to the close when the bar traded no size (size-less quotes)
+        double vwap = volume > 0 ? notional / volume : close;
+        sink.onBar(barStart, openPrice, high, low, close, volume, vwap);
+    }
+
+    public long getBarCount() {
+        return bars;
+    }
+
+    public long getBarNanos() {
+        return barNanos;
+    }
+}
@@ -0,0 +1,205 @@
+package cme_codeup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+// Single-writer, multi-reader variant of DEMATrend. Exactly one thread may call add/addData;
+// any number of threads may call the readers, which never block and never take a lock.
+// The published means and sampleCount are guarded by a seqlock: the writer makes the version
+// odd while it writes, and readers retry until they see the same even version before and after.
+public class ConcurrentDEMATrend {
+
+    private static final VarHandle VERSION;
+
+    static {
+        try {
+            VERSION = MethodHandles.lookup().findVarHandle(ConcurrentDEMATrend.class, "version", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private final int LONG_TREND_LEN;
+    private final int SHORT_TREND_LEN;
+
+    // owned by the writer thread
+    private final DEMA ST;
+    private final DEMA LT;
+    private long writerCount = 0;
+
+    // published state, read under the seqlock
+    private long version = 0;
+    private double shortMean;
+    private double longMean;
+    private long sampleCount = 0;
+
+    public double FLAT_RANGE = 0;
+
+    public ConcurrentDEMATrend(int longTrendLen, int shortTrendLen) {
+        this(longTrendLen, shortTrendLen, 0);
+    }
+
+    public ConcurrentDEMATrend(int longTrendLen, int shortTrendLen, double flatRange) {
+        LONG_TREND_LEN = longTrendLen;
+        SHORT_TREND_LEN = shortTrendLen;
+        FLAT_RANGE = flatRange;
+        ST = new DEMA(SHORT_TREND_LEN);
+        LT = new DEMA(LONG_TREND_LEN);
+    }
+
+    // writer only
+    public void add(int dataPoint) {
+        add((double) dataPoint);
+    }
+
+    // writer only
+    public void add(double dataPoint) {
+        long start = IndicatorMetrics.start();
+        ST.update(dataPoint);
+        LT.update(dataPoint);
+        ++writerCount;
+        publish();
+        IndicatorMetrics.TREND_ADD.recordSince(start);
+    }
+
+    // writer only; readers see the state at the end of the batch
+    public void addData(double[] prices, int off, int len) {
+        long start = IndicatorMetrics.start();
+        Objects.checkFromIndexSize(off, len, prices.length);
+        for (int i = off; i < off + len; i++) {
+            ST.update(prices[i]);
+            LT.update(prices[i]);
+        }
+        writerCount += len;
+        publish();
+        IndicatorMetrics.TREND_ADD_BATCH.recordSince(start);
+    }
+
+    private void publish() {
+        long v = version;
+        VERSION.setOpaque(this, v + 1);
+        VarHandle.storeStoreFence();
+        shortMean = ST.getMean();
+        longMean = LT.getMean();
+        sampleCount = writerCount;
+        VERSION.setRelease(this, v + 2);
+    }
+
+    public DEMATrend.ETrend getTrendRatio() {
+        long start = IndicatorMetrics.start();
+        DEMATrend.ETrend trend = evaluateTrendRatio();
+        IndicatorMetrics.TREND_READ.recordSince(start);
+        return trend;
+    }
+
+    private DEMATrend.ETrend evaluateTrendRatio() {
+        Snapshot snapshot = snapshot();
+        if (!snapshot.isReady()) {
+            return DEMATrend.ETrend.NA;
+        }
+        double diff = snapshot.ratio();
+        if (diff > 1 + FLAT_RANGE) {
+            DEMATrend.ETrend.UP.publishTrendValue(diff);
+            return DEMATrend.ETrend.UP;
+        } else if (diff < 1 - FLAT_RANGE) {
+            DEMATrend.ETrend.DOWN.publishTrendValue(diff);
+            return DEMATrend.ETrend.DOWN;
+        } else {
+            return DEMATrend.ETrend.FLAT;
+        }
+    }
+
+    // allocation-free evaluation: fills out with direction and ratio and touches no shared state
+    public TrendResult getTrend(TrendResult out) {
+        long start = IndicatorMetrics.start();
+        TrendResult result = evaluateTrend(out);
+        IndicatorMetrics.TREND_READ.recordSince(start);
+        return result;
+    }
+
+    private TrendResult evaluateTrend(TrendResult out) {
+        Snapshot snapshot = snapshot();
+        if (!snapshot.isReady()) {
+            return out.setNA();
+        }
+        return out.set(snapshot.ratio(), FLAT_RANGE);
+    }
+
+    public long getSampleCount() {
+        return snapshot().sampleCount;
+    }
+
+    // the one seqlock read: retries until it sees the same even version before and after. The
+    // Snapshot never escapes the inlined readers, so C2 scalar-replaces it and nothing is allocated.
+    private Snapshot snapshot() {
+        double st;
+        double lt;
+        long n;
+        long v;
+        do {
+            v = (long) VERSION.getAcquire(this);
+            st = shortMean;
+            lt = longMean;
+            n = sampleCount;
+            VarHandle.loadLoadFence();
+        } while ((v & 1) != 0 || v != (long) VERSION.getOpaque(this));
+        return new Snapshot(st, lt, n);
+    }
+
+    private final class Snapshot {
+        final double shortMean;
+        final double longMean;
+        final long sampleCount;
+
+        Snapshot(double shortMean, double longMean, long sampleCount) {
+            this.shortMean = shortMean;
+            this.longMean = longMean;
+            this.sampleCount = sampleCount;
+        }
+
+        boolean isReady() {
+            return sampleCount >= SHORT_TREND_LEN && sampleCount >= LONG_TREND_LEN;
+        }
+
+        double ratio() {
+            return shortMean / longMean;
+        }
+    }
+
+    // checkpoint layout: long sample count, short DEMA, long DEMA
+    static final int STATE_BYTES = 8 + 2 * DEMA.STATE_BYTES;
+
+    // writer only
+    void writeState(ByteBuffer buf) {
+        buf.putLong(writerCount);
+        ST.writeState(buf);
+        LT.writeState(buf);
+    }
+
+    // writer only; readers see the restored state once it is complete
+    void readState(ByteBuffer buf) {
+        writerCount = buf.getLong();
+        ST.readState(buf);
+        LT.readState(buf);
+        publish();
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentDEMATrend trend = new ConcurrentDEMATrend(50, 10);
+        Thread writer = new Thread(() -> {
+            for (int i = 0; i < 1_000_000; i++) {
+                trend.add(1000 + (i % 100));
+            }
+        });
+        writer.start();
+        long reads = 0;
+        while (writer.isAlive()) {
+            trend.getTrendRatio();
+            reads++;
+        }
+        writer.join();
+        System.out.println(trend.getTrendRatio() + " after " + trend.getSampleCount() + " samples, " + reads + " reads");
+    }
+}
@@ -0,0 +1,258 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Flow.Publisher of TickBatch with "latest price wins" conflation. Every subscription keeps the
+// latest price per instrument and a FIFO of instruments that changed since they were last sent;
+// a new price for an instrument that is already waiting overwrites it in place. A subscriber that
+// falls behind therefore only ever has at most one pending price per instrument: memory is bounded
+// by the instrument count, however far behind it is, and it catches up on current prices rather
+// than replaying stale ones.
+//
+// Demand is counted in batches: request(n) allows n more onNext calls, each carrying up to maxBatch
+// ticks. Delivery runs on the executor, one drain at a time per subscription, so onNext calls for
+// one subscriber never overlap.
+//
+//   ConflatingTickPublisher feed = new ConflatingTickPublisher(instruments, 256, executor);
+//   feed.subscribe(stage);
+//   feed.offer(id, price);   // from the feed thread
+//   feed.close();            // pending prices are still delivered, then onComplete
+public class ConflatingTickPublisher implements Flow.Publisher<TickBatch>, AutoCloseable {
+
+    private final int instruments;
+    private final int maxBatch;
+    private final Executor executor;
+
+    // copy-on-write so offer() iterates without allocating
+    private volatile ConflatingSubscription[] subscriptions = new ConflatingSubscription[0];
+    private volatile boolean closed;
+    private final LongAdder conflated = new LongAdder();
+
+    public ConflatingTickPublisher(int instruments, int maxBatch, Executor executor) {
+        if (instruments < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("instruments and maxBatch must be at least 1");
+        }
+        this.instruments = instruments;
+        this.maxBatch = maxBatch;
+        this.executor = Objects.requireNonNull(executor);
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super TickBatch> subscriber) {
+        ConflatingSubscription subscription = new ConflatingSubscription(Objects.requireNonNull(subscriber));
+        // onSubscribe before the subscription is published, so neither offer() nor close() can get a
+        // signal to the subscriber ahead of it (rule 1.9); prices offered meanwhile are not seen
+        subscriber.onSubscribe(subscription);
+        synchronized (this) {
+            // cancel() removes under this lock too, so a cancel from onSubscribe is seen here
+            if (subscription.cancelled) {
+                return;
+            }
+            ConflatingSubscription[] current = subscriptions;
+            ConflatingSubscription[] grown = Arrays.copyOf(current, current.length + 1);
+            grown[current.length] = subscription;
+            subscriptions = grown;
+        }
+        if (closed) {
+            subscription.complete();
+        }
+    }
+
+    private synchronized void remove(ConflatingSubscription subscription) {
+        ConflatingSubscription[] current = subscriptions;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i] == subscription) {
+                ConflatingSubscription[] shrunk = new ConflatingSubscription[current.length - 1];
+                System.arraycopy(current, 0, shrunk, 0, i);
+                System.arraycopy(current, i + 1, shrunk, i, current.length - i - 1);
+                subscriptions = shrunk;
+                return;
+            }
+        }
+    }
+
+    public void offer(int instrument, double price) {
+        if (closed) {
+            throw new IllegalStateException("Publisher is closed.");
+        }
+        Objects.checkIndex(instrument, instruments);
+        for (ConflatingSubscription subscription : subscriptions) {
+            subscription.offer(instrument, price);
+        }
+    }
+
+    public void offer(int[] instrumentIds, double[] prices, int off, int len) {
+        Objects.checkFromIndexSize(off, len, instrumentIds.length);
+        Objects.checkFromIndexSize(off, len, prices.length);
+        for (int i = off; i < off + len; i++) {
+            offer(instrumentIds[i], prices[i]);
+        }
+    }
+
+    // prices overwritten before they were delivered, summed over all subscriptions so far
+    public long getConflatedCount() {
+        return conflated.sum();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.length;
+    }
+
+    // no more offers; every subscriber still gets its pending prices, then onComplete
+    @Override
+    public void close() {
+        closed = true;
+        for (ConflatingSubscription subscription : subscriptions) {
+            subscription.complete();
+        }
+    }
+
+    private final class ConflatingSubscription implements Flow.Subscription, Runnable {
+
+        private final Flow.Subscriber<? super TickBatch> subscriber;
+
+        // pending prices, guarded by this
+        private final double[] latest = new double[instruments];
+        private final boolean[] pending = new boolean[instruments];
+        private final int[] queue = new int[instruments]; // FIFO ring of instruments with a pending price
+        private int queueHead;
+        private int queueSize;
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger(); // drain requests not yet handled
+        private volatile boolean cancelled;
+        private volatile boolean completing;
+        private volatile Throwable error;
+        private boolean done; // terminal signal sent; drain thread only
+
+        ConflatingSubscription(Flow.Subscriber<? super TickBatch> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void offer(int instrument, double price) {
+            synchronized (this) {
+                latest[instrument] = price;
+                if (pending[instrument]) {
+                    conflated.increment();
+                } else {
+                    pending[instrument] = true;
+                    queue[(queueHead + queueSize) % instruments] = instrument;
+                    queueSize++;
+                }
+            }
+            // without demand the price just waits; request() starts the next drain
+            if (demand.get() > 0) {
+                schedule();
+            }
+        }
+
+        void complete() {
+            completing = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // rule 3.9 of the reactive-streams spec: signal onError and stop
+                error = new IllegalArgumentException("non-positive request: " + n);
+            } else {
+                long current;
+                long next;
+                do {
+                    current = demand.get();
+                    next = current + n < 0 ? Long.MAX_VALUE : current + n;
+                } while (!demand.compareAndSet(current, next));
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            remove(this);
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        // drain loop: whoever moves wip off 0 drains until no request arrived meanwhile
+        @Override
+        public void run() {
+            int missed = 1;
+            do {
+                drain();
+                missed = wip.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void drain() {
+            if (done || cancelled) {
+                return;
+            }
+            if (error != null) {
+                terminate();
+                subscriber.onError(error);
+                return;
+            }
+            while (!cancelled && demand.get() > 0) {
+                TickBatch batch = poll();
+                if (batch == null) {
+                    break;
+                }
+                if (demand.get() != Long.MAX_VALUE) {
+                    demand.decrementAndGet();
+                }
+                try {
+                    subscriber.onNext(batch);
+                } catch (Throwable t) {
+                    terminate();
+                    subscriber.onError(t);
+                    return;
+                }
+            }
+            if (completing && !cancelled && isEmpty()) {
+                terminate();
+                subscriber.onComplete();
+            }
+        }
+
+        private void terminate() {
+            done = true;
+            cancelled = true;
+            remove(this);
+        }
+
+        private synchronized boolean isEmpty() {
+            return queueSize == 0;
+        }
+
+        // cuts the next batch off the FIFO; arrays are new per batch since the subscriber owns them
+        private synchronized TickBatch poll() {
+            if (queueSize == 0) {
+                return null;
+            }
+            int n = Math.min(queueSize, maxBatch);
+            int[] ids = new int[n];
+            double[] prices = new double[n];
+            for (int k = 0; k < n; k++) {
+                int instrument = queue[queueHead];
+                queueHead = (queueHead + 1) % instruments;
+                pending[instrument] = false;
+                ids[k] = instrument;
+                prices[k] = latest[instrument];
+            }
+            queueSize -= n;
+            return new TickBatch(ids, prices, n);
+        }
+    }
+}
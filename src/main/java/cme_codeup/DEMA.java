@@ -1,5 +1,8 @@
 package cme_codeup;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 public class DEMA {
 
     private final int period;
@@ -18,8 +21,15 @@ public class DEMA {
 
     // Function to add new data
     public void addData(double num) {
-        ema.addData(num);
-        emaOfEma.addData(ema.getMean());
+        long start = IndicatorMetrics.start();
+        update(num);
+        IndicatorMetrics.INDICATOR_ADD.recordSince(start);
+    }
+
+    // addData without metrics, for indicators built on DEMA that record their own latency
+    void update(double num) {
+        ema.update(num);
+        emaOfEma.update(ema.getMean());
         if (datapoints < period) {
             datapoints++;
             currentDEMA = ema.getMean();
@@ -28,10 +38,46 @@ public class DEMA {
         }
     }
 
+    // batch version of addData: consumes prices[off .. off+len) and, if outMeans is not null,
+    // writes the DEMA after each tick to outMeans[off .. off+len)
+    public void addData(double[] prices, int off, int len, double[] outMeans) {
+        long start = IndicatorMetrics.start();
+        Objects.checkFromIndexSize(off, len, prices.length);
+        if (outMeans != null) {
+            Objects.checkFromIndexSize(off, len, outMeans.length);
+        }
+        int end = off + len;
+        // each EMA leg depends on the previous tick, so this stays a scalar loop; the legs inline into it
+        for (int i = off; i < end; i++) {
+            update(prices[i]);
+            if (outMeans != null) {
+                outMeans[i] = currentDEMA;
+            }
+        }
+        IndicatorMetrics.INDICATOR_ADD_BATCH.recordSince(start);
+    }
+
     public double getMean() {
         return currentDEMA;
     }
 
+    // checkpoint layout: int period, double currentDEMA, int datapoints, then both EMA legs
+    static final int STATE_BYTES = 16 + 2 * EMA.STATE_BYTES;
+
+    void writeState(ByteBuffer buf) {
+        buf.putInt(period).putDouble(currentDEMA).putInt(datapoints);
+        ema.writeState(buf);
+        emaOfEma.writeState(buf);
+    }
+
+    void readState(ByteBuffer buf) {
+        IndicatorCheckpoint.checkConfig("DEMA period", period, buf.getInt());
+        currentDEMA = buf.getDouble();
+        datapoints = buf.getInt();
+        ema.readState(buf);
+        emaOfEma.readState(buf);
+    }
+
     private static void test() {
         double[] data = { 1.55, 2.0, 1.58, 1.3, 1.0, 1.6, 1.7, 1.0, 1.5, 2.0, 2.8, 2.1, 1.75, 1.55, 1.6 };
         DEMA d = new DEMA(3);
@@ -0,0 +1,115 @@
+package cme_codeup;
+
+import java.nio.ByteBuffer;
+
+// DEMA state for many instruments: the EMA and EMA-of-EMA legs are two EMABanks,
+// so a tick touches a handful of contiguous arrays instead of three objects per symbol.
+public class DEMABank {
+
+    private final int size;
+    private final int[] period;
+    private final double[] currentDEMA;
+    private final int[] datapoints;
+    private final EMABank ema;
+    private final EMABank emaOfEma;
+
+    // constructor for a bank where every instrument uses the same period
+    public DEMABank(int instruments, int period) {
+        this(new EMABank(instruments, period), new EMABank(instruments, period));
+    }
+
+    // constructor with one period per instrument, periods[instrumentId]
+    public DEMABank(int[] periods) {
+        this(new EMABank(periods), new EMABank(periods));
+    }
+
+    private DEMABank(EMABank ema, EMABank emaOfEma) {
+        this.size = ema.size();
+        this.ema = ema;
+        this.emaOfEma = emaOfEma;
+        this.period = new int[size];
+        this.currentDEMA = new double[size];
+        this.datapoints = new int[size];
+        for (int i = 0; i < size; i++) {
+            period[i] = ema.getPeriod(i);
+        }
+    }
+
+    // same update as DEMA.addData, applied to one instrument's slot
+    public void addData(int instrumentId, double num) {
+        ema.addData(instrumentId, num);
+        double mean = ema.getMean(instrumentId);
+        emaOfEma.addData(instrumentId, mean);
+        if (datapoints[instrumentId] < period[instrumentId]) {
+            datapoints[instrumentId]++;
+            currentDEMA[instrumentId] = mean;
+        } else {
+            currentDEMA[instrumentId] = 2 * mean - emaOfEma.getMean(instrumentId);
+        }
+    }
+
+    // updates every instrument with prices[instrumentId]
+    public void addData(double[] prices) {
+        if (prices.length < size) {
+            throw new IllegalArgumentException("Expected " + size + " prices, got " + prices.length);
+        }
+        // the legs update as whole books, so once warm both go through the EMABank kernel
+        ema.addData(prices);
+        double[] mean = ema.means();
+        emaOfEma.addData(mean);
+        double[] meanOfMean = emaOfEma.means();
+        for (int i = 0; i < size; i++) {
+            if (datapoints[i] < period[i]) {
+                datapoints[i]++;
+                currentDEMA[i] = mean[i];
+            } else {
+                currentDEMA[i] = 2 * mean[i] - meanOfMean[i];
+            }
+        }
+    }
+
+    public double getMean(int instrumentId) {
+        return currentDEMA[instrumentId];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // checkpoint layout: int size, double[] currentDEMA, int[] datapoints, then both EMA banks
+    int stateBytes() {
+        return 4 + 12 * size + ema.stateBytes() + emaOfEma.stateBytes();
+    }
+
+    void writeState(ByteBuffer buf) {
+        buf.putInt(size);
+        IndicatorCheckpoint.putDoubles(buf, currentDEMA);
+        IndicatorCheckpoint.putInts(buf, datapoints);
+        ema.writeState(buf);
+        emaOfEma.writeState(buf);
+    }
+
+    void readState(ByteBuffer buf) {
+        IndicatorCheckpoint.checkConfig("DEMABank size", size, buf.getInt());
+        IndicatorCheckpoint.getDoubles(buf, currentDEMA);
+        IndicatorCheckpoint.getInts(buf, datapoints);
+        ema.readState(buf);
+        emaOfEma.readState(buf);
+    }
+
+    private static void test() {
+        double[] data = { 1.55, 2.0, 1.58, 1.3, 1.0, 1.6, 1.7, 1.0, 1.5, 2.0, 2.8, 2.1, 1.75, 1.55, 1.6 };
+        DEMABank bank = new DEMABank(2, 3);
+        DEMA d = new DEMA(3);
+        for (double num : data) {
+            bank.addData(0, num);
+            bank.addData(1, -num);
+            d.addData(num);
+            System.out.println(bank.getMean(0) + " " + (bank.getMean(0) == d.getMean()) + " " + bank.getMean(1));
+        }
+    }
+
+    public static void main(String[] args) {
+        test();
+    }
+}
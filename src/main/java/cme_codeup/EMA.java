@@ -1,24 +1,39 @@
 package cme_codeup;
 
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
 public class EMA {
 
     // missing logger
     private final int period;
     private double currentEMA;
     private final double K;
-    private final double SMOOTHING_COEFFICIENT = 8;
+    static final double SMOOTHING_COEFFICIENT = 8;
     private int datapoints = 0;
     private double sum = 0;
 
     // constructor to initalize period
     public EMA(int period) {
+        this(period, SMOOTHING_COEFFICIENT);
+    }
+
+    // constructor with K = smoothingCoefficient / (period + 1); 2 gives the textbook EMA
+    public EMA(int period, double smoothingCoefficient) {
         this.period = period;
         this.currentEMA = 0.0;
-        K = SMOOTHING_COEFFICIENT / (double) (period + 1);
+        K = smoothingCoefficient / (double) (period + 1);
     }
 
     // function to add new data in the list
     public void addData(double num) {
+        long start = IndicatorMetrics.start();
+        update(num);
+        IndicatorMetrics.INDICATOR_ADD.recordSince(start);
+    }
+
+    // addData without metrics, for indicators built on EMA that record their own latency
+    void update(double num) {
         if (datapoints < period) {
             sum += num;
             datapoints++;
@@ -29,10 +44,59 @@ public class EMA {
         }
     }
 
+    // batch version of addData: consumes prices[off .. off+len) and, if outMeans is not null,
+    // writes the mean after each tick to outMeans[off .. off+len). Values match the scalar path bit for bit.
+    public void addData(double[] prices, int off, int len, double[] outMeans) {
+        long start = IndicatorMetrics.start();
+        Objects.checkFromIndexSize(off, len, prices.length);
+        if (outMeans != null) {
+            Objects.checkFromIndexSize(off, len, outMeans.length);
+        }
+        int end = off + len;
+        int i = off;
+        // warm-up ticks take the scalar SMA branch
+        while (i < end && datapoints < period) {
+            update(prices[i]);
+            if (outMeans != null) {
+                outMeans[i] = currentEMA;
+            }
+            i++;
+        }
+        datapoints += end - i;
+        double k = K;
+        double ema = currentEMA;
+        if (outMeans != null) {
+            for (; i < end; i++) {
+                ema = k * prices[i] + ema * (1 - k);
+                outMeans[i] = ema;
+            }
+        } else {
+            for (; i < end; i++) {
+                ema = k * prices[i] + ema * (1 - k);
+            }
+        }
+        currentEMA = ema;
+        IndicatorMetrics.INDICATOR_ADD_BATCH.recordSince(start);
+    }
+
     public double getMean() {
         return currentEMA;
     }
 
+    // checkpoint layout: int period (checked on restore), double currentEMA, double sum, int datapoints
+    static final int STATE_BYTES = 24;
+
+    void writeState(ByteBuffer buf) {
+        buf.putInt(period).putDouble(currentEMA).putDouble(sum).putInt(datapoints);
+    }
+
+    void readState(ByteBuffer buf) {
+        IndicatorCheckpoint.checkConfig("EMA period", period, buf.getInt());
+        currentEMA = buf.getDouble();
+        sum = buf.getDouble();
+        datapoints = buf.getInt();
+    }
+
     private static void test2() {
         double[] data = { 1.55, 2.0, 1.58, 1.3, 1.0, 1.6, 1.7, 1.0, 1.5, 2.0, 2.8, 2.1, 1.75, 1.55, 1.6 };
         EMA s = new EMA(3);
@@ -0,0 +1,201 @@
+package cme_codeup;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+// EMA state for many instruments kept in parallel primitive arrays indexed by instrument id.
+// Produces exactly the same values as one EMA per instrument, without one heap object per symbol.
+public class EMABank {
+
+    private final int size;
+    private final int[] period;
+    private final double[] K;
+    private final double[] currentEMA;
+    private final double[] sum;
+    private final int[] datapoints;
+    private int warming; // instruments still in the SMA warm-up branch
+
+    // constructor for a bank where every instrument uses the same period
+    public EMABank(int instruments, int period) {
+        this(filled(instruments, period));
+    }
+
+    // constructor with one period per instrument, periods[instrumentId]
+    public EMABank(int[] periods) {
+        this.size = periods.length;
+        this.period = periods.clone();
+        this.K = new double[size];
+        this.currentEMA = new double[size];
+        this.sum = new double[size];
+        this.datapoints = new int[size];
+        for (int i = 0; i < size; i++) {
+            K[i] = EMA.SMOOTHING_COEFFICIENT / (double) (period[i] + 1);
+            if (period[i] > 0) {
+                warming++;
+            }
+        }
+    }
+
+    // same update as EMA.addData, applied to one instrument's slot
+    public void addData(int instrumentId, double num) {
+        int n = datapoints[instrumentId];
+        if (n < period[instrumentId]) {
+            sum[instrumentId] += num;
+            datapoints[instrumentId] = ++n;
+            currentEMA[instrumentId] = sum[instrumentId] / n;
+            if (n == period[instrumentId]) {
+                warming--;
+            }
+        } else {
+            // datapoints is not advanced past period: it only gates the warm-up branch
+            double k = K[instrumentId];
+            currentEMA[instrumentId] = k * num + currentEMA[instrumentId] * (1 - k);
+        }
+    }
+
+    // updates every instrument with prices[instrumentId], one sequential pass over each array.
+    // Once no instrument is warming up the update runs through KERNEL, which uses the Vector API
+    // when jdk.incubator.vector is available; both kernels match the scalar path bit for bit.
+    public void addData(double[] prices) {
+        if (prices.length < size) {
+            throw new IllegalArgumentException("Expected " + size + " prices, got " + prices.length);
+        }
+        if (warming == 0) {
+            KERNEL.update(K, currentEMA, prices, size);
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            addData(i, prices[i]);
+        }
+    }
+
+    public double getMean(int instrumentId) {
+        return currentEMA[instrumentId];
+    }
+
+    public int getPeriod(int instrumentId) {
+        return period[instrumentId];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // read-only view of the means, indexed by instrument id
+    double[] means() {
+        return currentEMA;
+    }
+
+    // checkpoint layout: int size, int[] period (checked on restore), double[] currentEMA,
+    // double[] sum, int[] datapoints; every array is copied in bulk
+    int stateBytes() {
+        return 4 + 24 * size;
+    }
+
+    void writeState(ByteBuffer buf) {
+        buf.putInt(size);
+        IndicatorCheckpoint.putInts(buf, period);
+        IndicatorCheckpoint.putDoubles(buf, currentEMA);
+        IndicatorCheckpoint.putDoubles(buf, sum);
+        IndicatorCheckpoint.putInts(buf, datapoints);
+    }
+
+    void readState(ByteBuffer buf) {
+        IndicatorCheckpoint.checkConfig("EMABank size", size, buf.getInt());
+        for (int i = 0; i < size; i++) {
+            IndicatorCheckpoint.checkConfig("EMABank period of instrument " + i, period[i], buf.getInt());
+        }
+        IndicatorCheckpoint.getDoubles(buf, currentEMA);
+        IndicatorCheckpoint.getDoubles(buf, sum);
+        IndicatorCheckpoint.getInts(buf, datapoints);
+        warming = 0;
+        for (int i = 0; i < size; i++) {
+            if (datapoints[i] < period[i]) {
+                warming++;
+            }
+        }
+    }
+
+    // steady-state update currentEMA[i] = K[i] * prices[i] + currentEMA[i] * (1 - K[i]) for i < n
+    interface Kernel {
+        void update(double[] K, double[] currentEMA, double[] prices, int n);
+    }
+
+    static final class ScalarKernel implements Kernel {
+        @Override
+        public void update(double[] K, double[] currentEMA, double[] prices, int n) {
+            for (int i = 0; i < n; i++) {
+                double k = K[i];
+                currentEMA[i] = k * prices[i] + currentEMA[i] * (1 - k);
+            }
+        }
+    }
+
+    static final Kernel KERNEL = loadKernel();
+
+    // the vector kernel is only loaded reflectively so this class still links when the
+    // incubator module is absent; -Dcme_codeup.vector=false forces the scalar kernel
+    private static Kernel loadKernel() {
+        if (Boolean.parseBoolean(System.getProperty("cme_codeup.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernel) Class.forName("cme_codeup.EMABankVectorKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar kernel
+            }
+        }
+        return new ScalarKernel();
+    }
+
+    private static int[] filled(int instruments, int period) {
+        int[] periods = new int[instruments];
+        Arrays.fill(periods, period);
+        return periods;
+    }
+
+    private static void testBook() {
+        int instruments = 37;
+        EMABank bank = new EMABank(instruments, 4);
+        EMA[] emas = new EMA[instruments];
+        for (int i = 0; i < instruments; i++) {
+            emas[i] = new EMA(4);
+        }
+        double[] book = new double[instruments];
+        Random random = new java.util.Random(42);
+        int mismatches = 0;
+        for (int tick = 0; tick < 1000; tick++) {
+            for (int i = 0; i < instruments; i++) {
+                book[i] = 100 + random.nextGaussian();
+                emas[i].addData(book[i]);
+            }
+            bank.addData(book);
+            for (int i = 0; i < instruments; i++) {
+                if (bank.getMean(i) != emas[i].getMean()) {
+                    mismatches++;
+                }
+            }
+        }
+        System.out.println(KERNEL.getClass().getSimpleName() + " mismatches: " + mismatches);
+    }
+
+    private static void test() {
+        double[] data = { 1.55, 2.0, 1.58, 1.3, 1.0, 1.6, 1.7, 1.0, 1.5, 2.0, 2.8, 2.1, 1.75, 1.55, 1.6 };
+        EMABank bank = new EMABank(new int[] { 3, 5 });
+        EMA ema3 = new EMA(3);
+        EMA ema5 = new EMA(5);
+        for (double d : data) {
+            bank.addData(0, d);
+            bank.addData(1, d);
+            ema3.addData(d);
+            ema5.addData(d);
+            System.out.println(bank.getMean(0) + " " + (bank.getMean(0) == ema3.getMean())
+                    + " " + bank.getMean(1) + " " + (bank.getMean(1) == ema5.getMean()));
+        }
+    }
+
+    public static void main(String[] args) {
+        test();
+        testBook();
+    }
+}
@@ -0,0 +1,29 @@
+package cme_codeup;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD steady-state EMA update across instruments. Loaded reflectively by EMABank only when
+// jdk.incubator.vector is present. Lane-wise mul/sub/add are IEEE-exact and no FMA is used,
+// so every lane produces the same bits as the scalar K * px + ema * (1 - K).
+final class EMABankVectorKernel implements EMABank.Kernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public void update(double[] K, double[] currentEMA, double[] prices, int n) {
+        DoubleVector one = DoubleVector.broadcast(SPECIES, 1.0);
+        int i = 0;
+        int upperBound = SPECIES.loopBound(n);
+        for (; i < upperBound; i += SPECIES.length()) {
+            DoubleVector k = DoubleVector.fromArray(SPECIES, K, i);
+            DoubleVector ema = DoubleVector.fromArray(SPECIES, currentEMA, i);
+            DoubleVector px = DoubleVector.fromArray(SPECIES, prices, i);
+            k.mul(px).add(ema.mul(one.sub(k))).intoArray(currentEMA, i);
+        }
+        for (; i < n; i++) {
+            double k = K[i];
+            currentEMA[i] = k * prices[i] + currentEMA[i] * (1 - k);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+// n chained EMAs of one period (EMA, EMA of EMA, EMA of EMA of EMA, ...) combined with fixed
+// weights, updated in one loop over primitive arrays instead of one EMA object per level:
+//   order 2, weights (2, -1)     DEMA, same values as DEMA bit for bit
+//   order 3, weights (3, -3, 1)  TEMA
+//   order n                      binomial weights (-1)^(k+1) * C(n, k), k = 1..n
+// Any other weights give custom compositions. Like DEMA, every level warms up as an SMA of its
+// input and the output is the first level's mean until `period` ticks have been seen.
+public class EMACascade {
+
+    private final int period;
+    private final int order;
+    private final double K;
+    private final double[] weights;
+    private final double[] level; // level[k] = mean of the (k+1)-th EMA
+    private final double[] sum;   // warm-up sums per level
+    private int datapoints = 0;
+    private double current;
+
+    // binomial weights for the given order: 1 = EMA, 2 = DEMA, 3 = TEMA, ...
+    public EMACascade(int period, int order) {
+        this(period, order, EMA.SMOOTHING_COEFFICIENT);
+    }
+
+    // as above with K = smoothingCoefficient / (period + 1) instead of EMA's coefficient of 8
+    public EMACascade(int period, int order, double smoothingCoefficient) {
+        this(period, binomialWeights(order), smoothingCoefficient);
+    }
+
+    // weights[k] multiplies the (k+1)-th EMA; the cascade is weights.length levels deep
+    public EMACascade(int period, double[] weights, double smoothingCoefficient) {
+        if (weights.length == 0) {
+            throw new IllegalArgumentException("At least one weight is needed.");
+        }
+        this.period = period;
+        this.order = weights.length;
+        this.K = smoothingCoefficient / (double) (period + 1);
+        this.weights = weights.clone();
+        this.level = new double[order];
+        this.sum = new double[order];
+    }
+
+    public static EMACascade dema(int period) {
+        return new EMACascade(period, 2);
+    }
+
+    public static EMACascade tema(int period) {
+        return new EMACascade(period, 3);
+    }
+
+    static double[] binomialWeights(int order) {
+        if (order < 1) {
+            throw new IllegalArgumentException("order must be at least 1");
+        }
+        double[] weights = new double[order];
+        double c = 1;
+        for (int k = 1; k <= order; k++) {
+            c = c * (order - k + 1) / k; // C(order, k)
+            weights[k - 1] = (k % 2 == 1) ? c : -c;
+        }
+        return weights;
+    }
+
+    public void addData(double num) {
+        double x = num;
+        if (datapoints < period) {
+            datapoints++;
+            for (int k = 0; k < order; k++) {
+                sum[k] += x;
+                x = sum[k] / datapoints;
+                level[k] = x;
+            }
+            current = level[0];
+        } else {
+            for (int k = 0; k < order; k++) {
+                x = K * x + level[k] * (1 - K);
+                level[k] = x;
+            }
+            double out = weights[0] * level[0];
+            for (int k = 1; k < order; k++) {
+                out += weights[k] * level[k];
+            }
+            current = out;
+        }
+    }
+
+    // batch version of addData: consumes prices[off .. off+len) and, if outMeans is not null,
+    // writes the output after each tick to outMeans[off .. off+len)
+    public void addData(double[] prices, int off, int len, double[] outMeans) {
+        Objects.checkFromIndexSize(off, len, prices.length);
+        if (outMeans != null) {
+            Objects.checkFromIndexSize(off, len, outMeans.length);
+        }
+        for (int i = off; i < off + len; i++) {
+            addData(prices[i]);
+            if (outMeans != null) {
+                outMeans[i] = current;
+            }
+        }
+    }
+
+    public double getMean() {
+        return current;
+    }
+
+    // mean of the (levelIndex+1)-th EMA in the chain
+    public double getLevel(int levelIndex) {
+        return level[levelIndex];
+    }
+
+    public int getOrder() {
+        return order;
+    }
+
+    private static void test() {
+        EMACascade dema = EMACascade.dema(20);
+        EMACascade tema = EMACascade.tema(20);
+        DEMA reference = new DEMA(20);
+        EMA e1 = new EMA(20);
+        EMA e2 = new EMA(20);
+        EMA e3 = new EMA(20);
+        Random random = new Random(5);
+        double price = 100;
+        int demaMismatches = 0;
+        double temaError = 0;
+        for (int t = 0; t < 10_000; t++) {
+            price += random.nextGaussian();
+            dema.addData(price);
+            tema.addData(price);
+            reference.addData(price);
+            e1.addData(price);
+            e2.addData(e1.getMean());
+            e3.addData(e2.getMean());
+            if (dema.getMean() != reference.getMean()) {
+                demaMismatches++;
+            }
+            if (t >= 20) {
+                double expected = 3 * e1.getMean() - 3 * e2.getMean() + e3.getMean();
+                temaError = Math.max(temaError, Math.abs(tema.getMean() - expected));
+            }
+        }
+        System.out.println("DEMA mismatches: " + demaMismatches + ", TEMA max error: " + temaError
+                + ", 4th order weights: " + Arrays.toString(binomialWeights(4)));
+    }
+
+    public static void main(String[] args) {
+        test();
+    }
+}
@@ -0,0 +1,155 @@
+package cme_codeup;
+
+import java.util.Objects;
+import java.util.Random;
+
+// EMAs of one series at several periods ("rungs"), updated together in one pass per tick.
+// Every rung sees the same input, so the SMA warm-up of EMA.addData needs only one shared running
+// sum and count: a rung of period p returns sum / count for its first p ticks and then switches to
+// the recurrence. Values match one EMA per period bit for bit.
+// The means of the previous tick are kept in a second array (the two are swapped every tick,
+// nothing is copied), which gives crossover detection between any pair of rungs.
+public class EMALadder {
+
+    public enum Crossover {
+        ABOVE, // the first rung crossed above the second on the last tick
+        BELOW, // the first rung crossed below the second on the last tick
+        NONE
+    }
+
+    private final int size;
+    private final int[] period;
+    private final double[] K;
+    private final int maxPeriod;
+    private double[] current;
+    private double[] previous;
+    private double sum;
+    private long datapoints;
+
+    public EMALadder(int... periods) {
+        if (periods.length == 0) {
+            throw new IllegalArgumentException("At least one period is needed.");
+        }
+        this.size = periods.length;
+        this.period = periods.clone();
+        this.K = new double[size];
+        this.current = new double[size];
+        this.previous = new double[size];
+        int max = 0;
+        for (int i = 0; i < size; i++) {
+            K[i] = EMA.SMOOTHING_COEFFICIENT / (double) (period[i] + 1);
+            max = Math.max(max, period[i]);
+        }
+        this.maxPeriod = max;
+    }
+
+    public void addData(double num) {
+        double[] next = previous;
+        double[] last = current;
+        // past the longest warm-up every rung runs the recurrence: a branch-free loop over K and
+        // last that the JIT can vectorize
+        if (datapoints >= maxPeriod) {
+            for (int i = 0; i < size; i++) {
+                next[i] = K[i] * num + last[i] * (1 - K[i]);
+            }
+        } else {
+            sum += num;
+            double mean = sum / (datapoints + 1);
+            for (int i = 0; i < size; i++) {
+                next[i] = datapoints < period[i] ? mean : K[i] * num + last[i] * (1 - K[i]);
+            }
+        }
+        datapoints++;
+        previous = last;
+        current = next;
+    }
+
+    public void addData(double[] prices, int off, int len) {
+        Objects.checkFromIndexSize(off, len, prices.length);
+        for (int i = off; i < off + len; i++) {
+            addData(prices[i]);
+        }
+    }
+
+    public double getMean(int rung) {
+        return current[rung];
+    }
+
+    // means before the last tick
+    public double getPreviousMean(int rung) {
+        return previous[rung];
+    }
+
+    public int getPeriod(int rung) {
+        return period[rung];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getSampleCount() {
+        return datapoints;
+    }
+
+    // whether rung has consumed at least its period of ticks
+    public boolean isWarm(int rung) {
+        return datapoints >= period[rung];
+    }
+
+    // Did rung `first` cross rung `second` on the last tick? Both rungs have to be warm on the tick
+    // before it, so warm-up noise never reports a cross. Touching (difference 0) is not a cross.
+    public Crossover crossover(int first, int second) {
+        if (datapoints - 1 < Math.max(period[first], period[second])) {
+            return Crossover.NONE;
+        }
+        double before = previous[first] - previous[second];
+        double now = current[first] - current[second];
+        if (before <= 0 && now > 0) {
+            return Crossover.ABOVE;
+        } else if (before >= 0 && now < 0) {
+            return Crossover.BELOW;
+        }
+        return Crossover.NONE;
+    }
+
+    // EMATrend on any two rungs: shortRung / longRung classified with flatRange, NA until both are warm
+    public TrendResult getTrend(int shortRung, int longRung, double flatRange, TrendResult out) {
+        if (!isWarm(shortRung) || !isWarm(longRung)) {
+            return out.setNA();
+        }
+        return out.set(current[shortRung] / current[longRung], flatRange);
+    }
+
+    private static void test() {
+        int[] periods = { 5, 10, 20, 50, 100, 200 };
+        EMALadder ladder = new EMALadder(periods);
+        EMA[] emas = new EMA[periods.length];
+        for (int i = 0; i < periods.length; i++) {
+            emas[i] = new EMA(periods[i]);
+        }
+        Random random = new Random(3);
+        double price = 100;
+        int mismatches = 0;
+        int crosses = 0;
+        for (int t = 0; t < 10_000; t++) {
+            price += random.nextGaussian();
+            ladder.addData(price);
+            for (int i = 0; i < periods.length; i++) {
+                emas[i].addData(price);
+                if (emas[i].getMean() != ladder.getMean(i)) {
+                    mismatches++;
+                }
+            }
+            if (ladder.crossover(0, 3) != Crossover.NONE) {
+                crosses++;
+            }
+        }
+        System.out.println("mismatches: " + mismatches + ", EMA5/EMA50 crosses: " + crosses
+                + ", trend 20/200: " + ladder.getTrend(2, 5, 0, new TrendResult()));
+    }
+
+    public static void main(String[] args) {
+        test();
+    }
+}
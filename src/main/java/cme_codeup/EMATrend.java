@@ -1,6 +1,9 @@
 package cme_codeup;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.Objects;
 
 public class EMATrend {
     public static enum ETrend {
@@ -9,11 +12,20 @@ public class EMATrend {
         FLAT,
         NA;
 
-        private double trendValue = 0; //holds thet diff or the ratio of the short and long trend
+        // holds the diff or the ratio of the short and long trend; shared by every EMATrend, use getTrend(TrendResult) for a per-instance value
+        private volatile double trendValue = 0;
 
         public double getTrendValue() {return trendValue;}
 
         public void setTrendValue(double trendValue) {this.trendValue = trendValue;}
+
+        // setTrendValue for the lock-free readers: volatile, so a concurrent reader never sees a torn
+        // double, and skipped when unchanged, so readers of a steady trend do not all write its line
+        void publishTrendValue(double trendValue) {
+            if (this.trendValue != trendValue) {
+                this.trendValue = trendValue;
+            }
+        }
     }
 
     private final int LONG_TREND_LEN;
@@ -24,6 +36,18 @@ public class EMATrend {
 
     private long sampleCount = 0;
 
+    // short/long ratio of the last evaluation as raw bits, or DIRTY once a sample has arrived since.
+    // Readers of an unchanged trend cost one volatile read; the first reader after a sample
+    // evaluates under the monitor and publishes the result for the rest. Until both windows have
+    // filled the result is NOT_READY. Both markers are NaN payloads arithmetic never produces, so a
+    // 0/0 ratio is cached as itself and classified FLAT, as getTrendRatio always has.
+    private static final long DIRTY = 0x7ff0deadbeef0001L;
+    private static final long NOT_READY = 0x7ff0deadbeef0002L;
+    private volatile long ratioBits = DIRTY;
+
+    private TrendChangeListener listener;
+    private TrendResult.Direction lastDirection = TrendResult.Direction.NA;
+
     public double FLAT_RANGE = 0;
 
     public EMATrend(int longTrendLen, int shortTrendLen) {this(longTrendLen, shortTrendLen, 0);}
@@ -37,31 +61,156 @@ public class EMATrend {
     }
 
     public synchronized void add(int dataPoint){
-        ST.addData(dataPoint);
-        LT.addData(dataPoint);
+        long start = IndicatorMetrics.start();
+        ST.update(dataPoint);
+        LT.update(dataPoint);
+        ++sampleCount;
+        sampleAdded();
+        IndicatorMetrics.TREND_ADD.recordSince(start);
+    }
+
+    public synchronized void add(double dataPoint){
+        long start = IndicatorMetrics.start();
+        ST.update(dataPoint);
+        LT.update(dataPoint);
         ++sampleCount;
+        sampleAdded();
+        IndicatorMetrics.TREND_ADD.recordSince(start);
+    }
+
+    // batch version of add: takes the monitor once for the whole batch and, if outRatios is not null,
+    // writes the short/long ratio after each tick to outRatios[off .. off+len) (NaN until both windows fill)
+    public synchronized void addData(double[] prices, int off, int len, double[] outRatios){
+        long start = IndicatorMetrics.start();
+        Objects.checkFromIndexSize(off, len, prices.length);
+        if (outRatios != null){
+            Objects.checkFromIndexSize(off, len, outRatios.length);
+        }
+        int end = off + len;
+        for (int i = off; i < end; i++){
+            ST.update(prices[i]);
+            LT.update(prices[i]);
+            ++sampleCount;
+            if (listener != null){
+                checkDirection();
+            }
+            if (outRatios != null){
+                outRatios[i] = (sampleCount < SHORT_TREND_LEN || sampleCount < LONG_TREND_LEN) ? Double.NaN : ST.getMean()/LT.getMean();
+            }
+        }
+        ratioBits = DIRTY;
+        IndicatorMetrics.TREND_ADD_BATCH.recordSince(start);
+    }
+
+    // invalidates the cached ratio and, with a listener, evaluates right away to catch a flip
+    private void sampleAdded(){
+        ratioBits = DIRTY;
+        if (listener != null){
+            checkDirection();
+        }
+    }
+
+    private void checkDirection(){
+        long bits = evaluateRatio();
+        TrendResult.Direction direction = direction(bits);
+        if (direction != lastDirection){
+            TrendResult.Direction previous = lastDirection;
+            lastDirection = direction;
+            listener.onTrendChange(previous, direction, bits == NOT_READY ? Double.NaN : Double.longBitsToDouble(bits));
+        }
+    }
+
+    // called on every direction change from now on, on the adding thread; null removes it.
+    // The current direction becomes the baseline, so registering does not fire by itself.
+    public synchronized void setTrendChangeListener(TrendChangeListener listener){
+        this.listener = listener;
+        this.lastDirection = direction(evaluateRatio());
     }
 
-    public synchronized ETrend getTrendRatio(){
-        double diff = 0;
-        if (sampleCount < SHORT_TREND_LEN || sampleCount < LONG_TREND_LEN){
+    public ETrend getTrendRatio(){
+        long start = IndicatorMetrics.start();
+        ETrend trend = evaluateTrendRatio();
+        IndicatorMetrics.TREND_READ.recordSince(start);
+        return trend;
+    }
+
+    private ETrend evaluateTrendRatio(){
+        long bits = ratioBits();
+        if (bits == NOT_READY){
             return ETrend.NA;
         }
-        diff = ST.getMean()/LT.getMean();
-        if (diff > 1){
-            ETrend.UP.setTrendValue(diff);
+        double diff = Double.longBitsToDouble(bits);
+        if (diff > 1 + FLAT_RANGE){
+            ETrend.UP.publishTrendValue(diff);
             return ETrend.UP;
-        } else if (diff < 1){
-            ETrend.DOWN.setTrendValue(diff);
+        } else if (diff < 1 - FLAT_RANGE){
+            ETrend.DOWN.publishTrendValue(diff);
             return ETrend.DOWN;
         } else {
             return ETrend.FLAT;
         }
     }
 
+    // allocation-free evaluation: fills out with direction and ratio and touches no shared state
+    public TrendResult getTrend(TrendResult out){
+        long start = IndicatorMetrics.start();
+        TrendResult result = evaluateTrend(out);
+        IndicatorMetrics.TREND_READ.recordSince(start);
+        return result;
+    }
+
+    private TrendResult evaluateTrend(TrendResult out){
+        long bits = ratioBits();
+        return bits == NOT_READY ? out.setNA() : out.set(Double.longBitsToDouble(bits), FLAT_RANGE);
+    }
+
+    // cached short/long ratio as raw bits, NOT_READY until both windows have filled
+    private long ratioBits(){
+        long bits = ratioBits;
+        return bits == DIRTY ? evaluateRatio() : bits;
+    }
+
+    private synchronized long evaluateRatio(){
+        long bits = (sampleCount < SHORT_TREND_LEN || sampleCount < LONG_TREND_LEN) ? NOT_READY : Double.doubleToRawLongBits(ST.getMean()/LT.getMean());
+        ratioBits = bits;
+        return bits;
+    }
+
+    private TrendResult.Direction direction(long ratioBits){
+        return ratioBits == NOT_READY ? TrendResult.Direction.NA : TrendResult.classify(Double.longBitsToDouble(ratioBits), FLAT_RANGE);
+    }
+
+    // checkpoint layout: long sampleCount, short EMA, long EMA
+    static final int STATE_BYTES = 8 + 2 * EMA.STATE_BYTES;
+
+    synchronized void writeState(ByteBuffer buf){
+        buf.putLong(sampleCount);
+        ST.writeState(buf);
+        LT.writeState(buf);
+    }
+
+    synchronized void readState(ByteBuffer buf){
+        sampleCount = buf.getLong();
+        ST.readState(buf);
+        LT.readState(buf);
+        ratioBits = DIRTY;
+        lastDirection = direction(evaluateRatio());
+    }
+
+    // usage: EMATrend [ticks.csv [priceColumn]] replays a CSV tick file, otherwise runs the example data
     public static void main(String[] args) throws IOException{
-        int[] data = new int[1000];
-        char[] buf = new char[6000];
-        FileReader r = new FileReader()
+        EMATrend emaTrend = new EMATrend(5, 3);
+        emaTrend.setTrendChangeListener((previous, current, ratio) -> System.out.println(previous + " -> " + current + " at " + ratio));
+        if (args.length > 0) {
+            int priceColumn = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+            TickFileReplay replay = new TickFileReplay(Paths.get(args[0]), TickFileReplay.Format.CSV, priceColumn);
+            System.out.println(replay.replay(TickSink.of(emaTrend)));
+        } else {
+            int[] exampleData = { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10 };
+            for (int point : exampleData) {
+                emaTrend.add(point);
+            }
+        }
+        System.out.println(emaTrend.getTrendRatio());
     }
 }
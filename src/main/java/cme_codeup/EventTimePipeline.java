@@ -0,0 +1,146 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+// Streaming stage for raw, irregular ticks (timestampNanos, price, size). Every tick updates a
+// time-decayed EMA and DEMA and the open bar; only when a bar closes do the registered EMATrend,
+// DEMATrend and RANSACRegressor instances see a value (the bar close or VWAP). A burst of ticks
+// therefore costs one decay step and a few compares per tick, and the bar-level indicators run
+// once per bar. Nothing is allocated per tick or per bar.
+//
+//   EventTimePipeline pipeline = new EventTimePipeline(1_000_000_000L, 30_000_000_000L, BarPrice.VWAP)
+//           .add(emaTrend).add(ransac);
+//   pipeline.onTick(ts, price, size);   // per tick
+//   pipeline.flush();                   // at end of session, closes the last bar
+public class EventTimePipeline {
+
+    public enum BarPrice {
+        CLOSE,
+        VWAP
+    }
+
+    private final TimeDecayEMA ema;
+    private final TimeDecayDEMA dema;
+    private final BarAggregator bars;
+    private final BarPrice barPrice;
+
+    // set up before the first tick
+    private EMATrend[] emaTrends = new EMATrend[0];
+    private DEMATrend[] demaTrends = new DEMATrend[0];
+    private RANSACRegressor[] regressors = new RANSACRegressor[0];
+
+    private double lastBarPrice = Double.NaN;
+
+    // barNanos: bar length; tauNanos: time constant of the decayed EMA/DEMA
+    public EventTimePipeline(long barNanos, long tauNanos, BarPrice barPrice) {
+        this.ema = new TimeDecayEMA(tauNanos);
+        this.dema = new TimeDecayDEMA(tauNanos);
+        this.bars = new BarAggregator(barNanos, this::onBar);
+        this.barPrice = barPrice;
+    }
+
+    public EventTimePipeline add(EMATrend trend) {
+        emaTrends = Arrays.copyOf(emaTrends, emaTrends.length + 1);
+        emaTrends[emaTrends.length - 1] = trend;
+        return this;
+    }
+
+    public EventTimePipeline add(DEMATrend trend) {
+        demaTrends = Arrays.copyOf(demaTrends, demaTrends.length + 1);
+        demaTrends[demaTrends.length - 1] = trend;
+        return this;
+    }
+
+    public EventTimePipeline add(RANSACRegressor regressor) {
+        regressors = Arrays.copyOf(regressors, regressors.length + 1);
+        regressors[regressors.length - 1] = regressor;
+        return this;
+    }
+
+    public void onTick(long timestampNanos, double price, double size) {
+        ema.addData(timestampNanos, price);
+        dema.addData(timestampNanos, price);
+        bars.onTick(timestampNanos, price, size);
+    }
+
+    public void onTicks(long[] timestampNanos, double[] prices, double[] sizes, int off, int len) {
+        Objects.checkFromIndexSize(off, len, timestampNanos.length);
+        Objects.checkFromIndexSize(off, len, prices.length);
+        Objects.checkFromIndexSize(off, len, sizes.length);
+        for (int i = off; i < off + len; i++) {
+            onTick(timestampNanos[i], prices[i], sizes[i]);
+        }
+    }
+
+    // closes the open bar and feeds it downstream
+    public void flush() {
+        bars.flush();
+    }
+
+    private void onBar(long barStartNanos, double open, double high, double low, double close, double volume, double vwap) {
+        double price = barPrice == BarPrice.VWAP ? vwap : close;
+        lastBarPrice = price;
+        for (EMATrend trend : emaTrends) {
+            trend.add(price);
+        }
+        for (DEMATrend trend : demaTrends) {
+            trend.add(price);
+        }
+        for (RANSACRegressor regressor : regressors) {
+            regressor.append(price);
+        }
+    }
+
+    public TimeDecayEMA getDecayEMA() {
+        return ema;
+    }
+
+    public TimeDecayDEMA getDecayDEMA() {
+        return dema;
+    }
+
+    public long getBarCount() {
+        return bars.getBarCount();
+    }
+
+    // close or VWAP of the last finished bar, NaN before the first
+    public double getLastBarPrice() {
+        return lastBarPrice;
+    }
+
+    private static void test() {
+        long second = 1_000_000_000L;
+        EMATrend emaTrend = new EMATrend(30, 5);
+        DEMATrend demaTrend = new DEMATrend(30, 5);
+        RANSACRegressor ransac = new RANSACRegressor(200, 1.0, 60);
+        EventTimePipeline pipeline = new EventTimePipeline(second, 30 * second, BarPrice.VWAP)
+                .add(emaTrend).add(demaTrend).add(ransac);
+
+        // bursty arrivals: quiet gaps of up to 2 s, then bursts of up to 50 ticks on one timestamp
+        Random random = new Random(11);
+        long ts = 1_700_000_000L * second;
+        double price = 5000;
+        int ticks = 0;
+        while (ticks < 200_000) {
+            ts += (long) (random.nextDouble() * 2 * second);
+            int burst = 1 + (random.nextInt(10) == 0 ? random.nextInt(50) : 0);
+            for (int b = 0; b < burst; b++, ticks++) {
+                price += 0.25 * (random.nextInt(3) - 1) + 0.002;
+                pipeline.onTick(ts, price, 1 + random.nextInt(20));
+            }
+        }
+        pipeline.flush();
+        ransac.fit();
+        System.out.println(ticks + " ticks -> " + pipeline.getBarCount() + " bars; decayed EMA "
+                + pipeline.getDecayEMA().getMean() + ", DEMA " + pipeline.getDecayDEMA().getMean()
+                + ", last bar " + pipeline.getLastBarPrice());
+        System.out.println("EMATrend " + emaTrend.getTrend(new TrendResult()) + ", DEMATrend "
+                + demaTrend.getTrend(new TrendResult()) + ", RANSAC slope per bar " + ransac.getParams()[1]);
+    }
+
+    public static void main(String[] args) {
+        test();
+    }
+}
@@ -0,0 +1,286 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+// EMABank variant with float state for books of tens of thousands of instrument/period slots.
+// CME prices are integer multiples of each instrument's tick size, so prices come in as int ticks
+// and every mean is kept as a float offset in ticks from an anchor, which starts at the instrument's
+// first price. Whenever an offset grows past REBASE_TICKS the whole ticks are moved into the anchor
+// (exactly, so nothing is lost), checked on every single-instrument update and every
+// REBASE_INTERVAL book updates. Offsets therefore stay within REBASE_TICKS plus however far a price
+// moves in REBASE_INTERVAL updates, where a float resolves about 1e-4 of a tick, wherever the price
+// has wandered; that keeps the means within about a thousandth of a tick of EMABank (see test()).
+//
+// A slot holds 22 bytes (int period, float K, float mean, int anchor, int datapoints and a char
+// index into the table of distinct tick sizes) against EMABank's 32, so about a third less, not
+// half. The steady-state update streams 16 of them per slot (K, mean, anchor and the int price)
+// instead of EMABank's 24 (double K, double mean, double price).
+//
+// The update is mean += K * (x - mean), the same recurrence as EMA.addData rearranged, with the
+// SMA warm-up kept as an incremental mean, so no running sum is stored.
+public class FloatEMABank {
+
+    // offsets beyond this many ticks are folded into the anchor
+    private static final float REBASE_TICKS = 1 << 10;
+    // book updates through the kernel between two rebase sweeps
+    private static final int REBASE_INTERVAL = 64;
+
+    private final int size;
+    private final int[] period;
+    private final float[] K;
+    private final float[] mean;   // ticks relative to anchor
+    private final int[] anchor;   // ticks of the first price
+    private final int[] datapoints;
+    private final char[] tickIndex;       // slot -> index into the two tables below
+    private final double[] tickSizes;     // distinct tick sizes, in first-seen order
+    private final double[] ticksPerUnit;  // 1 / tickSizes[k]
+    private int warming;
+    private int sinceRebase;
+
+    // every instrument with the same period and tick size
+    public FloatEMABank(int instruments, int period, double tickSize) {
+        this(filled(instruments, period), filled(instruments, tickSize));
+    }
+
+    // periods[instrumentId] and tickSizes[instrumentId]
+    public FloatEMABank(int[] periods, double[] tickSizes) {
+        if (periods.length != tickSizes.length) {
+            throw new IllegalArgumentException("Expected one tick size per period, got " + tickSizes.length
+                    + " for " + periods.length);
+        }
+        this.size = periods.length;
+        this.period = periods.clone();
+        this.K = new float[size];
+        this.mean = new float[size];
+        this.anchor = new int[size];
+        this.datapoints = new int[size];
+        this.tickIndex = new char[size];
+        Map<Double, Integer> distinct = new HashMap<>();
+        double[] sizes = new double[Math.min(size, 16)];
+        for (int i = 0; i < size; i++) {
+            if (period[i] < 1) {
+                throw new IllegalArgumentException("Period of instrument " + i + " must be at least 1, got " + period[i]);
+            }
+            double tickSize = tickSizes[i];
+            if (!(tickSize > 0)) {
+                throw new IllegalArgumentException("Tick size of instrument " + i + " must be positive");
+            }
+            Integer k = distinct.get(tickSize);
+            if (k == null) {
+                k = distinct.size();
+                if (k > Character.MAX_VALUE) {
+                    throw new IllegalArgumentException("At most " + (Character.MAX_VALUE + 1) + " distinct tick sizes are supported");
+                }
+                distinct.put(tickSize, k);
+                if (k == sizes.length) {
+                    sizes = Arrays.copyOf(sizes, 2 * k);
+                }
+                sizes[k] = tickSize;
+            }
+            tickIndex[i] = (char) k.intValue();
+            K[i] = (float) (EMA.SMOOTHING_COEFFICIENT / (double) (period[i] + 1));
+        }
+        this.tickSizes = Arrays.copyOf(sizes, distinct.size());
+        this.ticksPerUnit = new double[this.tickSizes.length];
+        for (int k = 0; k < ticksPerUnit.length; k++) {
+            ticksPerUnit[k] = 1 / this.tickSizes[k];
+        }
+        this.warming = size;
+    }
+
+    // price in ticks, e.g. 20_000 for ES at 5000.00
+    public void addTicks(int instrumentId, int ticks) {
+        int n = datapoints[instrumentId];
+        if (n == 0) {
+            anchor[instrumentId] = ticks;
+        }
+        float x = ticks - anchor[instrumentId];
+        float m = mean[instrumentId];
+        if (n < period[instrumentId]) {
+            datapoints[instrumentId] = ++n;
+            mean[instrumentId] = m + (x - m) / n;
+            if (n == period[instrumentId]) {
+                warming--;
+            }
+        } else {
+            mean[instrumentId] = m + K[instrumentId] * (x - m);
+        }
+        if (Math.abs(mean[instrumentId]) > REBASE_TICKS) {
+            rebase(instrumentId);
+        }
+    }
+
+    // Moves the whole ticks of the offset into the anchor. Exact: with |mean| > REBASE_TICKS the
+    // rounded shift is within a factor of two of mean, so the float subtraction does not round.
+    private void rebase(int instrumentId) {
+        int shift = Math.round(mean[instrumentId]);
+        anchor[instrumentId] += shift;
+        mean[instrumentId] -= shift;
+    }
+
+    // updates every instrument with ticks[instrumentId], one sequential pass over each array.
+    // Once no instrument is warming up the update runs through KERNEL, which uses the Vector API
+    // when jdk.incubator.vector is available; both kernels produce the same bits.
+    public void addTicks(int[] ticks) {
+        if (ticks.length < size) {
+            throw new IllegalArgumentException("Expected " + size + " prices, got " + ticks.length);
+        }
+        if (warming == 0) {
+            KERNEL.update(K, mean, ticks, anchor, size);
+            if (++sinceRebase == REBASE_INTERVAL) {
+                sinceRebase = 0;
+                for (int i = 0; i < size; i++) {
+                    if (Math.abs(mean[i]) > REBASE_TICKS) {
+                        rebase(i);
+                    }
+                }
+            }
+            return;
+        }
+        for (int i = 0; i < size; i++) {
+            addTicks(i, ticks[i]);
+        }
+    }
+
+    // price in the instrument's units, rounded to the nearest tick
+    public void addData(int instrumentId, double price) {
+        addTicks(instrumentId, toTicks(instrumentId, price));
+    }
+
+    public int toTicks(int instrumentId, double price) {
+        long ticks = Math.round(price * ticksPerUnit[tickIndex[instrumentId]]);
+        if (ticks > Integer.MAX_VALUE || ticks < Integer.MIN_VALUE) {
+            throw new IllegalArgumentException("Price " + price + " does not fit in int ticks");
+        }
+        return (int) ticks;
+    }
+
+    public double getMean(int instrumentId) {
+        return getMeanTicks(instrumentId) * tickSizes[tickIndex[instrumentId]];
+    }
+
+    // mean in (fractional) ticks
+    public double getMeanTicks(int instrumentId) {
+        return anchor[instrumentId] + (double) mean[instrumentId];
+    }
+
+    public int getPeriod(int instrumentId) {
+        return period[instrumentId];
+    }
+
+    public double getTickSize(int instrumentId) {
+        return tickSizes[tickIndex[instrumentId]];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // steady-state update mean[i] += K[i] * ((ticks[i] - anchor[i]) - mean[i]) for i < n
+    interface Kernel {
+        void update(float[] K, float[] mean, int[] ticks, int[] anchor, int n);
+    }
+
+    static final class ScalarKernel implements Kernel {
+        @Override
+        public void update(float[] K, float[] mean, int[] ticks, int[] anchor, int n) {
+            for (int i = 0; i < n; i++) {
+                float m = mean[i];
+                mean[i] = m + K[i] * ((float) (ticks[i] - anchor[i]) - m);
+            }
+        }
+    }
+
+    static final Kernel KERNEL = loadKernel();
+
+    // same switch as EMABank: -Dcme_codeup.vector=false forces the scalar kernel
+    private static Kernel loadKernel() {
+        if (Boolean.parseBoolean(System.getProperty("cme_codeup.vector", "true"))
+                && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()) {
+            try {
+                return (Kernel) Class.forName("cme_codeup.FloatEMABankVectorKernel").getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException | LinkageError e) {
+                // fall through to the scalar kernel
+            }
+        }
+        return new ScalarKernel();
+    }
+
+    private static int[] filled(int instruments, int period) {
+        int[] periods = new int[instruments];
+        Arrays.fill(periods, period);
+        return periods;
+    }
+
+    private static double[] filled(int instruments, double tickSize) {
+        double[] tickSizes = new double[instruments];
+        Arrays.fill(tickSizes, tickSize);
+        return tickSizes;
+    }
+
+    // Precision report: runs this bank and an EMABank over the same random-walk ticks and prints
+    // the worst and mean absolute difference of the means per period, in ticks. Every fourth
+    // instrument also trends by 3 ticks a step, ending some 60,000 ticks from its first price.
+    private static void test() {
+        int[] testPeriods = { 5, 10, 20, 50, 100, 200, 1000 };
+        int perPeriod = 500;
+        int instruments = testPeriods.length * perPeriod;
+        int[] periods = new int[instruments];
+        double[] tickSizes = new double[instruments];
+        int[] ticks = new int[instruments];
+        Random random = new Random(21);
+        for (int i = 0; i < instruments; i++) {
+            periods[i] = testPeriods[i / perPeriod];
+            // ES-like (0.25 at ~5000) and ZN-like (1/64 at ~110) instruments alternate
+            tickSizes[i] = i % 2 == 0 ? 0.25 : 1.0 / 64;
+            ticks[i] = i % 2 == 0 ? 20_000 : 7_040;
+        }
+        FloatEMABank bank = new FloatEMABank(periods, tickSizes);
+        EMABank reference = new EMABank(periods);
+        double[] prices = new double[instruments];
+        double[] maxError = new double[testPeriods.length];
+        double[] sumError = new double[testPeriods.length];
+        int steps = 20_000;
+        for (int step = 0; step < steps; step++) {
+            for (int i = 0; i < instruments; i++) {
+                ticks[i] += random.nextInt(5) - 2 + (i % 4 == 3 ? 3 : 0);
+                prices[i] = ticks[i] * tickSizes[i];
+            }
+            bank.addTicks(ticks);
+            reference.addData(prices);
+            for (int i = 0; i < instruments; i++) {
+                double error = Math.abs(bank.getMeanTicks(i) - reference.getMean(i) / tickSizes[i]);
+                int p = i / perPeriod;
+                maxError[p] = Math.max(maxError[p], error);
+                sumError[p] += error;
+            }
+        }
+        for (int p = 0; p < testPeriods.length; p++) {
+            System.out.printf("period %4d: max error %.5f ticks, mean error %.6f ticks%n", testPeriods[p],
+                    maxError[p], sumError[p] / ((double) steps * perPeriod));
+        }
+
+        int rounds = 2_000;
+        for (int r = 0; r < 5; r++) {
+            long start = System.nanoTime();
+            for (int step = 0; step < rounds; step++) {
+                bank.addTicks(ticks);
+            }
+            long floatNanos = System.nanoTime() - start;
+            start = System.nanoTime();
+            for (int step = 0; step < rounds; step++) {
+                reference.addData(prices);
+            }
+            long doubleNanos = System.nanoTime() - start;
+            System.out.println(KERNEL.getClass().getSimpleName() + ", " + instruments + " slots: float "
+                    + floatNanos / rounds + " ns/book, double " + doubleNanos / rounds + " ns/book");
+        }
+    }
+
+    public static void main(String[] args) {
+        test();
+    }
+}
@@ -0,0 +1,33 @@
+package cme_codeup;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// SIMD steady-state update for FloatEMABank. Loaded reflectively only when jdk.incubator.vector is
+// present. The int tick offsets are converted lane-wise (exact for |offset| < 2^24), and the
+// lane-wise float sub/mul/add without FMA give the same bits as the scalar kernel.
+final class FloatEMABankVectorKernel implements FloatEMABank.Kernel {
+
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public void update(float[] K, float[] mean, int[] ticks, int[] anchor, int n) {
+        int i = 0;
+        int upperBound = FLOATS.loopBound(n);
+        for (; i < upperBound; i += FLOATS.length()) {
+            FloatVector k = FloatVector.fromArray(FLOATS, K, i);
+            FloatVector m = FloatVector.fromArray(FLOATS, mean, i);
+            FloatVector x = (FloatVector) IntVector.fromArray(INTS, ticks, i)
+                    .sub(IntVector.fromArray(INTS, anchor, i))
+                    .convert(VectorOperators.I2F, 0);
+            m.add(k.mul(x.sub(m))).intoArray(mean, i);
+        }
+        for (; i < n; i++) {
+            float m = mean[i];
+            mean[i] = m + K[i] * ((float) (ticks[i] - anchor[i]) - m);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+package cme_codeup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+
+// Snapshot of indicator state for warm restarts. Register the indicators once, in a fixed order,
+// then save() on the way down and restore() into freshly constructed instances with the same
+// configuration on the way up, instead of replaying `period` ticks per instrument.
+//
+//   file : int MAGIC, int VERSION, int entries, then per entry a byte tag and the indicator's state
+//
+// Everything is written into one buffer and out with a single write (or through a mapping), and
+// read back the same way; the banks copy their arrays in bulk. save() writes a temporary file and
+// renames it over the target, so a crash mid-save leaves the previous checkpoint in place.
+// Periods and window sizes are stored too and restore() throws IllegalStateException when they do
+// not match the registered indicators; entries before the mismatch have already been restored.
+public class IndicatorCheckpoint {
+
+    private static final int MAGIC = 0x434D4543; // "CMEC"
+    private static final int VERSION = 2; // 2: RANSACRegressor maxTrials and last fit counts
+    private static final int HEADER_BYTES = 12;
+
+    private static final byte TAG_EMA = 1;
+    private static final byte TAG_DEMA = 2;
+    private static final byte TAG_EMA_TREND = 3;
+    private static final byte TAG_DEMA_TREND = 4;
+    private static final byte TAG_CONCURRENT_EMA_TREND = 5;
+    private static final byte TAG_CONCURRENT_DEMA_TREND = 6;
+    private static final byte TAG_RANSAC = 7;
+    private static final byte TAG_EMA_BANK = 8;
+    private static final byte TAG_DEMA_BANK = 9;
+
+    private final List<Entry> entries = new ArrayList<>();
+
+    public IndicatorCheckpoint add(EMA ema) {
+        return add(TAG_EMA, () -> EMA.STATE_BYTES, ema::writeState, ema::readState);
+    }
+
+    public IndicatorCheckpoint add(DEMA dema) {
+        return add(TAG_DEMA, () -> DEMA.STATE_BYTES, dema::writeState, dema::readState);
+    }
+
+    public IndicatorCheckpoint add(EMATrend trend) {
+        return add(TAG_EMA_TREND, () -> EMATrend.STATE_BYTES, trend::writeState, trend::readState);
+    }
+
+    public IndicatorCheckpoint add(DEMATrend trend) {
+        return add(TAG_DEMA_TREND, () -> DEMATrend.STATE_BYTES, trend::writeState, trend::readState);
+    }
+
+    // save and restore from the writer thread
+    public IndicatorCheckpoint add(ConcurrentEMATrend trend) {
+        return add(TAG_CONCURRENT_EMA_TREND, () -> ConcurrentEMATrend.STATE_BYTES, trend::writeState, trend::readState);
+    }
+
+    // save and restore from the writer thread
+    public IndicatorCheckpoint add(ConcurrentDEMATrend trend) {
+        return add(TAG_CONCURRENT_DEMA_TREND, () -> ConcurrentDEMATrend.STATE_BYTES, trend::writeState, trend::readState);
+    }
+
+    public IndicatorCheckpoint add(RANSACRegressor regressor) {
+        return add(TAG_RANSAC, regressor::stateBytes, regressor::writeState, regressor::readState);
+    }
+
+    public IndicatorCheckpoint add(EMABank bank) {
+        return add(TAG_EMA_BANK, bank::stateBytes, bank::writeState, bank::readState);
+    }
+
+    public IndicatorCheckpoint add(DEMABank bank) {
+        return add(TAG_DEMA_BANK, bank::stateBytes, bank::writeState, bank::readState);
+    }
+
+    private IndicatorCheckpoint add(byte tag, IntSupplier bytes, Consumer<ByteBuffer> writer, Consumer<ByteBuffer> reader) {
+        entries.add(new Entry(tag, bytes, writer, reader));
+        return this;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long save(Path path) throws IOException {
+        return save(path, false);
+    }
+
+    // Writes every registered indicator to path and returns the checkpoint size in bytes.
+    // mapped writes through a MappedByteBuffer instead of a direct buffer and a channel write.
+    public long save(Path path, boolean mapped) throws IOException {
+        long total = HEADER_BYTES;
+        for (Entry entry : entries) {
+            total += 1 + entry.bytes.getAsInt();
+        }
+        if (total > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Checkpoint of " + total + " bytes does not fit in one buffer");
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = mapped
+                    ? channel.map(FileChannel.MapMode.READ_WRITE, 0, total)
+                    : ByteBuffer.allocateDirect((int) total);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(entries.size());
+            for (Entry entry : entries) {
+                buf.put(entry.tag);
+                entry.writer.accept(buf);
+            }
+            if (buf.position() != total) {
+                throw new IllegalStateException("Checkpoint wrote " + buf.position() + " bytes, expected " + total);
+            }
+            buf.flip();
+            if (!mapped) {
+                while (buf.hasRemaining()) {
+                    channel.write(buf);
+                }
+            }
+            channel.force(false);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return total;
+    }
+
+    public void restore(Path path) throws IOException {
+        restore(path, false);
+    }
+
+    // Loads path into the registered indicators, which must have been added in the same order
+    // and with the same configuration as when it was saved. mapped reads through a mapping of the
+    // file instead of one read into a direct buffer.
+    public void restore(Path path, boolean mapped) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) {
+                throw new IOException("Not a checkpoint file: " + path);
+            }
+            ByteBuffer buf;
+            if (mapped) {
+                buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                buf = ByteBuffer.allocateDirect((int) size);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf) < 0) {
+                        throw new IOException("Truncated checkpoint: " + path);
+                    }
+                }
+                buf.flip();
+            }
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+                throw new IOException("Not a checkpoint file or unsupported version: " + path);
+            }
+            checkConfig("checkpoint entry count", entries.size(), buf.getInt());
+            for (int i = 0; i < entries.size(); i++) {
+                Entry entry = entries.get(i);
+                byte tag = buf.get();
+                if (tag != entry.tag) {
+                    throw new IllegalStateException("Checkpoint entry " + i + " has type " + tag + ", expected " + entry.tag);
+                }
+                entry.reader.accept(buf);
+            }
+        }
+    }
+
+    static void checkConfig(String what, int expected, int actual) {
+        if (expected != actual) {
+            throw new IllegalStateException("Checkpoint " + what + " is " + actual + ", expected " + expected);
+        }
+    }
+
+    // bulk copies between arrays and the buffer through typed views; they advance buf.position()
+
+    static void putDoubles(ByteBuffer buf, double[] values) {
+        putDoubles(buf, values, values.length);
+    }
+
+    static void putDoubles(ByteBuffer buf, double[] values, int n) {
+        buf.asDoubleBuffer().put(values, 0, n);
+        buf.position(buf.position() + 8 * n);
+    }
+
+    static void getDoubles(ByteBuffer buf, double[] values) {
+        getDoubles(buf, values, values.length);
+    }
+
+    static void getDoubles(ByteBuffer buf, double[] values, int n) {
+        buf.asDoubleBuffer().get(values, 0, n);
+        buf.position(buf.position() + 8 * n);
+    }
+
+    static void putInts(ByteBuffer buf, int[] values) {
+        buf.asIntBuffer().put(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    static void getInts(ByteBuffer buf, int[] values) {
+        buf.asIntBuffer().get(values);
+        buf.position(buf.position() + 4 * values.length);
+    }
+
+    static void putLongs(ByteBuffer buf, long[] values) {
+        buf.asLongBuffer().put(values);
+        buf.position(buf.position() + 8 * values.length);
+    }
+
+    static void getLongs(ByteBuffer buf, long[] values) {
+        buf.asLongBuffer().get(values);
+        buf.position(buf.position() + 8 * values.length);
+    }
+
+    private static final class Entry {
+        private final byte tag;
+        private final IntSupplier bytes;
+        private final Consumer<ByteBuffer> writer;
+        private final Consumer<ByteBuffer> reader;
+
+        Entry(byte tag, IntSupplier bytes, Consumer<ByteBuffer> writer, Consumer<ByteBuffer> reader) {
+            this.tag = tag;
+            this.bytes = bytes;
+            this.writer = writer;
+            this.reader = reader;
+        }
+    }
+
+    // Warms a book, checkpoints it, restores into fresh instances and checks they carry on identically
+    private static void test() throws IOException {
+        int instruments = 5000;
+        EMABank bank = new EMABank(instruments, 50);
+        DEMABank demaBank = new DEMABank(instruments, 50);
+        EMATrend trend = new EMATrend(50, 10);
+        RANSACRegressor ransac = new RANSACRegressor(100, 1.0, 200);
+        // derives maxTrials and the threshold in fit(), so a restored copy must get them from the file
+        RANSACRegressor ransacDefault = new RANSACRegressor(0.99, 200);
+        ransac.setSeed(7);
+        ransacDefault.setSeed(7);
+        double[] book = new double[instruments];
+        for (int tick = 0; tick < 300; tick++) {
+            for (int i = 0; i < instruments; i++) {
+                book[i] = 100 + i + Math.sin(tick * 0.1 + i);
+            }
+            bank.addData(book);
+            demaBank.addData(book);
+            trend.add(book[0]);
+            ransac.append(book[0]);
+            ransacDefault.append(book[1]);
+        }
+        ransac.fit();
+        ransacDefault.fit();
+
+        Path path = Files.createTempFile("indicators", ".ckpt");
+        long start = System.nanoTime();
+        long bytes = new IndicatorCheckpoint().add(bank).add(demaBank).add(trend).add(ransac).add(ransacDefault)
+                .save(path, true);
+        long saved = System.nanoTime();
+
+        EMABank bank2 = new EMABank(instruments, 50);
+        DEMABank demaBank2 = new DEMABank(instruments, 50);
+        EMATrend trend2 = new EMATrend(50, 10);
+        RANSACRegressor ransac2 = new RANSACRegressor(100, 1.0, 200);
+        RANSACRegressor ransacDefault2 = new RANSACRegressor(0.99, 200);
+        ransac2.setSeed(7);
+        ransacDefault2.setSeed(7);
+        new IndicatorCheckpoint().add(bank2).add(demaBank2).add(trend2).add(ransac2).add(ransacDefault2)
+                .restore(path, true);
+        long restored = System.nanoTime();
+        System.out.println(bytes + " bytes, saved in " + (saved - start) / 1000 + " us, restored in "
+                + (restored - saved) / 1000 + " us");
+
+        for (int i = 0; i < instruments; i++) {
+            book[i] += 1;
+        }
+        bank.addData(book);
+        bank2.addData(book);
+        demaBank.addData(book);
+        demaBank2.addData(book);
+        int mismatches = 0;
+        for (int i = 0; i < instruments; i++) {
+            if (bank.getMean(i) != bank2.getMean(i) || demaBank.getMean(i) != demaBank2.getMean(i)) {
+                mismatches++;
+            }
+        }
+        System.out.println("book mismatches after restore: " + mismatches);
+        System.out.println("trend " + trend.getTrendRatio() + " / " + trend2.getTrendRatio());
+
+        // the next warm refit must run the same trials on both sides
+        RANSACRegressor[][] pairs = { { ransac, ransac2 }, { ransacDefault, ransacDefault2 } };
+        for (RANSACRegressor[] pair : pairs) {
+            for (int tick = 0; tick < 20; tick++) {
+                double price = 100 + Math.sin(tick * 0.3) + (tick % 7 == 0 ? 5 : 0);
+                pair[0].append(price);
+                pair[1].append(price);
+            }
+            pair[0].refit();
+            pair[1].refit();
+            System.out.println("ransac refit: slope " + pair[0].getParams()[1] + " / " + pair[1].getParams()[1]
+                    + ", trials " + pair[0].getLastTrialCount() + " / " + pair[1].getLastTrialCount());
+        }
+        Files.delete(path);
+    }
+
+    public static void main(String[] args) throws IOException {
+        test();
+    }
+}
@@ -0,0 +1,318 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// In-process indicator service. Instruments 0 .. instruments-1 are sharded over worker threads by
+// instrument % shards; each shard is fed through its own TickRing and is the only thread that ever
+// updates its instruments' indicators, so the update path takes no locks. Trends are read from any
+// thread through the seqlocked ConcurrentEMATrend/ConcurrentDEMATrend, or pushed to a TrendListener
+// on the shard thread whenever the EMA trend direction changes.
+//
+//   IndicatorEngine engine = new IndicatorEngine(instruments, shards, 1 << 16, 50, 10);
+//   engine.setListener((id, trend) -> ...);
+//   engine.start();
+//   engine.publish(id, price);      // from one publishing thread
+//   engine.getEMATrend(id, result); // from any thread
+//   engine.close();
+//
+// publish/offer must be called from a single thread: every ring has exactly one producer.
+// An exception on a shard thread (a throwing listener, say) stops that shard; it is recorded, and
+// from then on offer/publish for the shard's instruments throw it as the cause instead of queueing
+// ticks nobody drains.
+public class IndicatorEngine implements AutoCloseable {
+
+    public interface TrendListener {
+        // runs on the shard thread that owns instrument; result is reused once the call returns
+        void onTrendChange(int instrument, TrendResult result);
+    }
+
+    // ticks handled per ring drain before head is released back to the producer
+    private static final int DRAIN_LIMIT = 256;
+
+    private final int instruments;
+    private final ConcurrentEMATrend[] emaTrends;
+    private final ConcurrentDEMATrend[] demaTrends;
+    private final Shard[] shards;
+
+    // set before start(), read by the shard threads afterwards
+    private TrendListener listener;
+    private int ransacWindow;
+    private int ransacMaxTrials;
+    private double ransacThreshold;
+    private int ransacRefitEvery;
+
+    private volatile boolean running;
+    private volatile boolean started;
+    private volatile boolean closed;
+
+    public IndicatorEngine(int instruments, int shards, int ringCapacity, int longTrendLen, int shortTrendLen) {
+        if (instruments < 1 || shards < 1) {
+            throw new IllegalArgumentException("instruments and shards must be at least 1");
+        }
+        this.instruments = instruments;
+        this.emaTrends = new ConcurrentEMATrend[instruments];
+        this.demaTrends = new ConcurrentDEMATrend[instruments];
+        for (int i = 0; i < instruments; i++) {
+            emaTrends[i] = new ConcurrentEMATrend(longTrendLen, shortTrendLen);
+            demaTrends[i] = new ConcurrentDEMATrend(longTrendLen, shortTrendLen);
+        }
+        this.shards = new Shard[shards];
+        for (int s = 0; s < shards; s++) {
+            this.shards[s] = new Shard(s, (instruments - s + shards - 1) / shards, ringCapacity);
+        }
+    }
+
+    // Keeps a RANSAC line over the last windowSize prices of every instrument and refits it every
+    // refitEvery ticks (warm-started, see RANSACRegressor.refit); the slope is read with getSlope.
+    // Regressors are created by the shard on an instrument's first tick. Call before start().
+    public void enableRansac(int windowSize, int maxTrials, double residualThreshold, int refitEvery) {
+        checkNotStarted();
+        if (windowSize < 2 || maxTrials < 1 || refitEvery < 1 || !(residualThreshold > 0)) {
+            throw new IllegalArgumentException("windowSize must be at least 2, maxTrials and refitEvery at least 1 and residualThreshold positive");
+        }
+        this.ransacWindow = windowSize;
+        this.ransacMaxTrials = maxTrials;
+        this.ransacThreshold = residualThreshold;
+        this.ransacRefitEvery = refitEvery;
+    }
+
+    // Call before start()
+    public void setListener(TrendListener listener) {
+        checkNotStarted();
+        this.listener = listener;
+    }
+
+    public synchronized void start() {
+        checkNotStarted();
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        started = true;
+        running = true;
+        for (Shard shard : shards) {
+            shard.thread.start();
+        }
+    }
+
+    private void checkNotStarted() {
+        if (started) {
+            throw new IllegalStateException("Engine already started.");
+        }
+    }
+
+    // Queues one tick; false when the owning shard's ring is full. Throws once close() has been
+    // called or the owning shard has failed; a tick offered while close() runs on another thread
+    // may still be dropped.
+    public boolean offer(int instrument, double price) {
+        if (instrument < 0 || instrument >= instruments) {
+            throw new IllegalArgumentException("Unknown instrument " + instrument);
+        }
+        if (closed) {
+            throw new IllegalStateException("Engine is closed.");
+        }
+        Shard shard = shards[instrument % shards.length];
+        Throwable failure = shard.failure;
+        if (failure != null) {
+            throw new IllegalStateException(shard.thread.getName() + " failed.", failure);
+        }
+        return shard.ring.offer(instrument, price);
+    }
+
+    // Queues one tick, spinning while the owning shard's ring is full
+    public void publish(int instrument, double price) {
+        while (!offer(instrument, price)) {
+            if (!running) {
+                throw new IllegalStateException("Engine is not running.");
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    public TrendResult getEMATrend(int instrument, TrendResult out) {
+        return emaTrends[instrument].getTrend(out);
+    }
+
+    public TrendResult getDEMATrend(int instrument, TrendResult out) {
+        return demaTrends[instrument].getTrend(out);
+    }
+
+    // slope of the last RANSAC fit for instrument, NaN before the first fit, after a fit that found
+    // no model (NaN prices, say) or without enableRansac
+    public double getSlope(int instrument) {
+        Shard shard = shards[instrument % shards.length];
+        return Double.longBitsToDouble(shard.slopes.get(instrument / shards.length));
+    }
+
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    // the exception that stopped the shard owning instrument, or null while it runs
+    public Throwable getShardFailure(int instrument) {
+        return shards[instrument % shards.length].failure;
+    }
+
+    // ticks processed by all shards so far
+    public long getProcessedCount() {
+        long total = 0;
+        for (Shard shard : shards) {
+            total += shard.processed;
+        }
+        return total;
+    }
+
+    // Stops accepting work once the shards have drained everything already queued, then joins them.
+    // If the calling thread is interrupted while waiting it returns early with the interrupt flag
+    // set; the shards still finish draining on their own.
+    @Override
+    public void close() {
+        closed = true;
+        running = false;
+        for (Shard shard : shards) {
+            if (shard.thread.isAlive()) {
+                try {
+                    shard.thread.join();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private final class Shard implements Runnable, TickRing.Handler {
+        private final TickRing ring;
+        private final Thread thread;
+        private final RANSACRegressor[] regressors;
+        private final int[] sinceFit;
+        private final AtomicLongArray slopes;
+        private final byte[] lastDirection;
+        private final TrendResult scratch = new TrendResult();
+        private volatile long processed;
+        private volatile Throwable failure;
+
+        Shard(int index, int owned, int ringCapacity) {
+            this.ring = new TickRing(ringCapacity);
+            this.regressors = new RANSACRegressor[owned];
+            this.sinceFit = new int[owned];
+            this.slopes = new AtomicLongArray(owned);
+            for (int i = 0; i < owned; i++) {
+                slopes.set(i, Double.doubleToRawLongBits(Double.NaN));
+            }
+            this.lastDirection = new byte[owned];
+            Arrays.fill(lastDirection, (byte) TrendResult.Direction.NA.ordinal());
+            this.thread = new Thread(this, "indicator-shard-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                drainUntilClosed();
+            } catch (Throwable t) {
+                // recorded for offer/publish, then left to the thread's uncaught exception handler
+                failure = t;
+                throw t;
+            }
+        }
+
+        private void drainUntilClosed() {
+            int idle = 0;
+            while (true) {
+                int n = ring.drain(this, DRAIN_LIMIT);
+                if (n > 0) {
+                    processed = processed + n;
+                    idle = 0;
+                } else if (!running) {
+                    // close() happened after the last publish, so this pass sees everything queued
+                    while ((n = ring.drain(this, DRAIN_LIMIT)) > 0) {
+                        processed = processed + n;
+                    }
+                    return;
+                } else {
+                    idle = backOff(idle);
+                }
+            }
+        }
+
+        // spin, then yield, then park briefly while the ring stays empty
+        private int backOff(int idle) {
+            if (idle < 100) {
+                Thread.onSpinWait();
+            } else if (idle < 200) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(20_000);
+            }
+            return idle + 1;
+        }
+
+        @Override
+        public void onTick(int instrument, double price) {
+            int local = instrument / shards.length;
+            ConcurrentEMATrend emaTrend = emaTrends[instrument];
+            emaTrend.add(price);
+            demaTrends[instrument].add(price);
+            if (ransacWindow > 0) {
+                updateRansac(local, price);
+            }
+            if (listener != null) {
+                emaTrend.getTrend(scratch);
+                byte direction = (byte) scratch.getDirection().ordinal();
+                if (direction != lastDirection[local]) {
+                    lastDirection[local] = direction;
+                    listener.onTrendChange(instrument, scratch);
+                }
+            }
+        }
+
+        private void updateRansac(int local, double price) {
+            RANSACRegressor regressor = regressors[local];
+            if (regressor == null) {
+                regressor = new RANSACRegressor(ransacMaxTrials, ransacThreshold, ransacWindow);
+                regressor.setAdaptiveTrials(true);
+                regressors[local] = regressor;
+            }
+            regressor.append(price);
+            if (++sinceFit[local] >= ransacRefitEvery && regressor.size() >= 2) {
+                sinceFit[local] = 0;
+                regressor.refit();
+                double slope = regressor.hasModel() ? regressor.getParams()[1] : Double.NaN;
+                slopes.lazySet(local, Double.doubleToRawLongBits(slope));
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int instruments = 2000;
+        int shards = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        long ticks = 4_000_000;
+        IndicatorEngine engine = new IndicatorEngine(instruments, shards, 1 << 14, 50, 10);
+        engine.enableRansac(100, 200, 1.0, 50);
+        LongAdder changes = new LongAdder();
+        engine.setListener((instrument, trend) -> changes.increment());
+        engine.start();
+
+        double[] price = new double[instruments];
+        Arrays.fill(price, 5000);
+        SplittableRandom random = new SplittableRandom(1);
+        long start = System.nanoTime();
+        for (long t = 0; t < ticks; t++) {
+            int id = random.nextInt(instruments);
+            price[id] += random.nextDouble() - 0.5;
+            engine.publish(id, price[id]);
+        }
+        engine.close();
+        long nanos = System.nanoTime() - start;
+
+        TrendResult result = new TrendResult();
+        System.out.println(shards + " shards, " + engine.getProcessedCount() + " ticks in " + nanos / 1_000_000
+                + " ms (" + Math.round(ticks * 1e9 / nanos) + " ticks/s), " + changes.sum() + " trend changes");
+        System.out.println("instrument 0: EMA " + engine.getEMATrend(0, result) + ", DEMA "
+                + engine.getDEMATrend(0, new TrendResult()) + ", slope " + engine.getSlope(0));
+    }
+}
@@ -0,0 +1,240 @@
+package cme_codeup;
+
+import java.lang.management.ManagementFactory;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Process-wide latency histograms and counters for the indicators and RANSAC fits.
+// Off unless the JVM is started with -Dcme_codeup.metrics=true. ENABLED is a static final, so when
+// it is false the JIT folds every `if (ENABLED)` away and the instrumented methods cost nothing;
+// when it is true a recording is two System.nanoTime() calls, a ThreadLocal lookup and a plain
+// increment in the calling thread's own histogram cell (see LatencyHistogram), so shards on
+// different threads never contend, but each recording does cost those clock reads and the lookup.
+//
+//   long start = IndicatorMetrics.start();
+//   ... work ...
+//   IndicatorMetrics.TREND_ADD.recordSince(start);
+//
+// Read the numbers with report() (plain text) or over JMX after registerMBean().
+public final class IndicatorMetrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("cme_codeup.metrics");
+
+    // EMA/DEMA addData called directly; indicators built on them record under their own name only.
+    // The *_BATCH histograms take one recording per batch addData call, covering the whole batch,
+    // so they never mix with the per-tick latencies.
+    public static final LatencyHistogram INDICATOR_ADD = new LatencyHistogram("indicator.add");
+    public static final LatencyHistogram INDICATOR_ADD_BATCH = new LatencyHistogram("indicator.addBatch");
+    // EMATrend/DEMATrend and their concurrent variants: add, batch addData and getTrendRatio/getTrend
+    public static final LatencyHistogram TREND_ADD = new LatencyHistogram("trend.add");
+    public static final LatencyHistogram TREND_ADD_BATCH = new LatencyHistogram("trend.addBatch");
+    public static final LatencyHistogram TREND_READ = new LatencyHistogram("trend.read");
+    // RANSACRegressor.fit()/refit() and RANSACRegressorNaive.fit()
+    public static final LatencyHistogram FIT = new LatencyHistogram("ransac.fit");
+
+    private static final LongAdder TRIALS = new LongAdder();
+    private static final LongAdder INLIERS = new LongAdder();
+    private static final LongAdder POINTS = new LongAdder();
+
+    private static final String OBJECT_NAME = "cme_codeup:type=IndicatorMetrics";
+
+    private IndicatorMetrics() {
+    }
+
+    // start timestamp for LatencyHistogram.recordSince; 0 without reading the clock when disabled
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    // one RANSAC fit: its latency, trials run and the size of the consensus set out of points
+    static void recordFit(long start, int trials, int inliers, int points) {
+        if (ENABLED) {
+            FIT.record(System.nanoTime() - start);
+            TRIALS.add(trials);
+            INLIERS.add(inliers);
+            POINTS.add(points);
+        }
+    }
+
+    public static long getTrialsRun() {
+        return TRIALS.sum();
+    }
+
+    // inliers / points over all recorded fits, NaN before the first
+    public static double getInlierRatio() {
+        long points = POINTS.sum();
+        return points == 0 ? Double.NaN : (double) INLIERS.sum() / points;
+    }
+
+    public static void reset() {
+        INDICATOR_ADD.reset();
+        INDICATOR_ADD_BATCH.reset();
+        TREND_ADD.reset();
+        TREND_ADD_BATCH.reset();
+        TREND_READ.reset();
+        FIT.reset();
+        TRIALS.reset();
+        INLIERS.reset();
+        POINTS.reset();
+    }
+
+    public static String report() {
+        StringBuilder out = new StringBuilder();
+        out.append("metrics enabled=").append(ENABLED).append('\n');
+        INDICATOR_ADD.appendTo(out);
+        INDICATOR_ADD_BATCH.appendTo(out);
+        TREND_ADD.appendTo(out);
+        TREND_ADD_BATCH.appendTo(out);
+        TREND_READ.appendTo(out);
+        FIT.appendTo(out);
+        long fits = FIT.getCount();
+        out.append("ransac.trials total=").append(getTrialsRun())
+                .append(" perFit=").append(fits == 0 ? 0 : (double) getTrialsRun() / fits)
+                .append(" inlierRatio=").append(getInlierRatio())
+                .append('\n');
+        return out.toString();
+    }
+
+    // Registers the IndicatorMetricsMXBean under cme_codeup:type=IndicatorMetrics; idempotent
+    public static synchronized void registerMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new MXBean(), name);
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register " + OBJECT_NAME, e);
+        }
+    }
+
+    // run with -Dcme_codeup.metrics=true to see numbers
+    public static void main(String[] args) {
+        registerMBean();
+        EMATrend trend = new EMATrend(50, 10);
+        EMA ema = new EMA(20);
+        RANSACRegressor ransac = new RANSACRegressor(500, 1.0, 200);
+        ransac.setAdaptiveTrials(true);
+        SplittableRandom random = new SplittableRandom(1);
+        double price = 5000;
+        double[] batch = new double[64];
+        for (int i = 0; i < batch.length; i++) {
+            batch[i] = price + i % 3;
+        }
+        for (int i = 0; i < 200_000; i++) {
+            price += random.nextDouble() - 0.5;
+            ema.addData(price);
+            trend.add(price);
+            if (i % 1000 == 999) {
+                ema.addData(batch, 0, batch.length, null);
+            }
+            trend.getTrendRatio();
+            ransac.append(price);
+            if (i % 100 == 99) {
+                ransac.refit();
+            }
+        }
+        System.out.print(report());
+    }
+
+    private static final class MXBean implements IndicatorMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public long getIndicatorAddCount() {
+            return INDICATOR_ADD.getCount();
+        }
+
+        @Override
+        public long getIndicatorAddP99Nanos() {
+            return INDICATOR_ADD.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getIndicatorAddBatchCount() {
+            return INDICATOR_ADD_BATCH.getCount();
+        }
+
+        @Override
+        public long getIndicatorAddBatchP99Nanos() {
+            return INDICATOR_ADD_BATCH.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getTrendAddCount() {
+            return TREND_ADD.getCount();
+        }
+
+        @Override
+        public long getTrendAddP99Nanos() {
+            return TREND_ADD.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getTrendAddBatchCount() {
+            return TREND_ADD_BATCH.getCount();
+        }
+
+        @Override
+        public long getTrendAddBatchP99Nanos() {
+            return TREND_ADD_BATCH.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getTrendReadCount() {
+            return TREND_READ.getCount();
+        }
+
+        @Override
+        public long getTrendReadP99Nanos() {
+            return TREND_READ.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getFitCount() {
+            return FIT.getCount();
+        }
+
+        @Override
+        public long getFitP50Nanos() {
+            return FIT.getValueAtPercentile(50);
+        }
+
+        @Override
+        public long getFitP99Nanos() {
+            return FIT.getValueAtPercentile(99);
+        }
+
+        @Override
+        public long getTrialsRun() {
+            return IndicatorMetrics.getTrialsRun();
+        }
+
+        @Override
+        public double getMeanTrialsPerFit() {
+            long fits = FIT.getCount();
+            return fits == 0 ? 0 : (double) IndicatorMetrics.getTrialsRun() / fits;
+        }
+
+        @Override
+        public double getInlierRatio() {
+            return IndicatorMetrics.getInlierRatio();
+        }
+
+        @Override
+        public String getReport() {
+            return report();
+        }
+
+        @Override
+        public void reset() {
+            IndicatorMetrics.reset();
+        }
+    }
+}
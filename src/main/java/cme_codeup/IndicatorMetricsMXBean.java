@@ -0,0 +1,44 @@
+package cme_codeup;
+
+// JMX view of IndicatorMetrics, registered with IndicatorMetrics.registerMBean()
+public interface IndicatorMetricsMXBean {
+
+    boolean isEnabled();
+
+    long getIndicatorAddCount();
+
+    long getIndicatorAddP99Nanos();
+
+    long getIndicatorAddBatchCount();
+
+    long getIndicatorAddBatchP99Nanos();
+
+    long getTrendAddCount();
+
+    long getTrendAddP99Nanos();
+
+    long getTrendAddBatchCount();
+
+    long getTrendAddBatchP99Nanos();
+
+    long getTrendReadCount();
+
+    long getTrendReadP99Nanos();
+
+    long getFitCount();
+
+    long getFitP50Nanos();
+
+    long getFitP99Nanos();
+
+    long getTrialsRun();
+
+    double getMeanTrialsPerFit();
+
+    double getInlierRatio();
+
+    // all histograms and counters as plain text, see IndicatorMetrics.report()
+    String getReport();
+
+    void reset();
+}
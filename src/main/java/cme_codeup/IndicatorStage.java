@@ -0,0 +1,187 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Flow.Processor that feeds every tick of a TickBatch to the indicators registered for its
+// instrument (any TickSink: TickSink.of(EMA), TickSink.of(EMATrend), TickSink.of(RANSACRegressor),
+// ...), then passes the batch on to its own subscribers.
+//
+// Backpressure is bounded at both ends. Upstream, at most `prefetch` batches are requested ahead,
+// topped up as they are consumed. Downstream, batches go through SubmissionPublisher's bounded
+// per-subscriber buffer; when a downstream subscriber is full, submit() blocks, this stage stops
+// requesting, and a ConflatingTickPublisher upstream starts conflating instead of queueing.
+//
+//   ConflatingTickPublisher feed = new ConflatingTickPublisher(instruments, 256, executor);
+//   IndicatorStage stage = new IndicatorStage(instruments, 16).add(id, TickSink.of(trend));
+//   feed.subscribe(stage);
+//   stage.subscribe(strategy);
+public class IndicatorStage extends SubmissionPublisher<TickBatch> implements Flow.Processor<TickBatch, TickBatch> {
+
+    private final TickSink[] sinks; // by instrument, null when nothing is registered
+    private final int prefetch;
+    private final int replenish;
+
+    // upstream state, only touched from onSubscribe/onNext, which the spec serializes
+    private Flow.Subscription upstream;
+    private int consumed;
+
+    // downstream on the common pool with the default buffer of Flow.defaultBufferSize() batches
+    public IndicatorStage(int instruments, int prefetch) {
+        super();
+        this.sinks = new TickSink[instruments];
+        this.prefetch = checkPrefetch(prefetch);
+        this.replenish = Math.max(1, prefetch / 2);
+    }
+
+    public IndicatorStage(int instruments, int prefetch, Executor executor, int maxBufferCapacity) {
+        super(executor, maxBufferCapacity);
+        this.sinks = new TickSink[instruments];
+        this.prefetch = checkPrefetch(prefetch);
+        this.replenish = Math.max(1, prefetch / 2);
+    }
+
+    private static int checkPrefetch(int prefetch) {
+        if (prefetch < 1) {
+            throw new IllegalArgumentException("prefetch must be at least 1");
+        }
+        return prefetch;
+    }
+
+    // set up before subscribing; several sinks on one instrument run in the order they were added
+    public IndicatorStage add(int instrument, TickSink sink) {
+        TickSink existing = sinks[instrument];
+        sinks[instrument] = existing == null ? sink : TickSink.all(existing, sink);
+        return this;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        if (upstream != null) {
+            subscription.cancel();
+            return;
+        }
+        upstream = subscription;
+        subscription.request(prefetch);
+    }
+
+    @Override
+    public void onNext(TickBatch batch) {
+        double[] prices = batch.prices();
+        for (int i = 0, n = batch.size(); i < n; i++) {
+            TickSink sink = sinks[batch.instrument(i)];
+            if (sink != null) {
+                sink.onTicks(prices, i, 1);
+            }
+        }
+        // blocks while a downstream buffer is full, which holds back the next request upstream
+        submit(batch);
+        if (++consumed >= replenish) {
+            upstream.request(consumed);
+            consumed = 0;
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        closeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        close();
+    }
+
+    // A feed far faster than its consumer: 2M ticks over 500 instruments into EMATrend stages,
+    // with a downstream subscriber that spends 50 us per batch. Conflation keeps the backlog at
+    // most one price per instrument, and the final prices delivered are the final prices offered.
+    private static void test() throws InterruptedException {
+        int instruments = 500;
+        // separate threads for the two hops: the stage blocks in submit() while downstream is full
+        ExecutorService feedExecutor = Executors.newSingleThreadExecutor();
+        ExecutorService stageExecutor = Executors.newSingleThreadExecutor();
+        ConflatingTickPublisher feed = new ConflatingTickPublisher(instruments, 64, feedExecutor);
+        IndicatorStage stage = new IndicatorStage(instruments, 8, stageExecutor, 4);
+        EMATrend[] trends = new EMATrend[instruments];
+        for (int i = 0; i < instruments; i++) {
+            trends[i] = new EMATrend(50, 10);
+            stage.add(i, TickSink.of(trends[i]));
+        }
+
+        double[] lastDelivered = new double[instruments];
+        LongAdder delivered = new LongAdder();
+        CountDownLatch completed = new CountDownLatch(1);
+        stage.subscribe(new Flow.Subscriber<TickBatch>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(TickBatch batch) {
+                for (int i = 0; i < batch.size(); i++) {
+                    lastDelivered[batch.instrument(i)] = batch.price(i);
+                }
+                delivered.add(batch.size());
+                LockSupport.parkNanos(50_000); // slow consumer
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+                completed.countDown();
+            }
+
+            @Override
+            public void onComplete() {
+                completed.countDown();
+            }
+        });
+        feed.subscribe(stage);
+
+        double[] lastOffered = new double[instruments];
+        double[] price = new double[instruments];
+        Arrays.fill(price, 5000);
+        Random random = new Random(25);
+        int ticks = 2_000_000;
+        long start = System.nanoTime();
+        for (int t = 0; t < ticks; t++) {
+            int id = random.nextInt(instruments);
+            price[id] += 0.25 * (random.nextInt(3) - 1);
+            feed.offer(id, price[id]);
+            lastOffered[id] = price[id];
+        }
+        long feedNanos = System.nanoTime() - start;
+        feed.close();
+        completed.await(30, TimeUnit.SECONDS);
+        feedExecutor.shutdown();
+        stageExecutor.shutdown();
+
+        int stale = 0;
+        for (int i = 0; i < instruments; i++) {
+            if (lastDelivered[i] != lastOffered[i]) {
+                stale++;
+            }
+        }
+        System.out.println(ticks + " ticks offered in " + feedNanos / 1_000_000 + " ms, " + delivered.sum()
+                + " delivered, " + feed.getConflatedCount() + " conflated, instruments not on their last price: "
+                + stale + ", trend 0: " + trends[0].getTrend(new TrendResult()));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        test();
+    }
+}
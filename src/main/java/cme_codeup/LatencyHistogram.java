@@ -0,0 +1,205 @@
+package cme_codeup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
+// Log-linear latency histogram in the style of HdrHistogram: values below 64 ns get a bucket each,
+// above that every power of two is split into 32 buckets, so any recorded value is reported to
+// within about 3%. Values up to 2^40 ns (about 18 minutes) are tracked, larger ones are clamped.
+//
+// Every recording thread gets its own cell of bucket counts, registered on its first record(), so
+// recording is a ThreadLocal lookup, an index computation and a plain increment of a count no other
+// thread writes: no atomics and no cache line shared between, say, IndicatorEngine shards. Readers
+// merge the cells. A cell whose thread has finished is folded into one retired array, on the next
+// registration, read or reset, so pools that churn threads do not grow the histogram without bound.
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final long MAX_VALUE = (1L << 40) - 1;
+    private static final int BUCKETS = index(MAX_VALUE) + 1;
+
+    private static final VarHandle COUNTS = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final String name;
+    private final ThreadLocal<Cell> cell = ThreadLocal.withInitial(this::register);
+    // copy-on-write, changed under this
+    private volatile Cell[] cells = new Cell[0];
+    // counts since the last reset of the cells already folded in, guarded by this
+    private final long[] retired = new long[BUCKETS];
+
+    public LatencyHistogram(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    // bucket b >= 1 covers [32 << b, 64 << b) in 32 steps of 1 << b; bucket 0 covers [0, 64) exactly
+    private static int index(long value) {
+        int bucket = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS);
+        return bucket * SUB_BUCKETS + (int) (value >>> bucket);
+    }
+
+    // highest value that lands in bucket index i
+    private static long upperBound(int i) {
+        int bucket = Math.max(0, i / SUB_BUCKETS - 1);
+        long sub = i - (long) bucket * SUB_BUCKETS;
+        return ((sub + 1) << bucket) - 1;
+    }
+
+    private synchronized Cell register() {
+        retireDeadCells();
+        Cell created = new Cell(Thread.currentThread());
+        Cell[] current = cells;
+        Cell[] grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = created;
+        cells = grown;
+        return created;
+    }
+
+    // Folds the cells of finished threads into retired. A thread that is no longer alive has made
+    // its last write, so its counts are final when read here.
+    private void retireDeadCells() {
+        Cell[] current = cells;
+        int live = 0;
+        for (Cell c : current) {
+            if (c.isOwnerAlive()) {
+                live++;
+            }
+        }
+        if (live == current.length) {
+            return;
+        }
+        Cell[] kept = new Cell[live];
+        int k = 0;
+        for (Cell c : current) {
+            if (c.isOwnerAlive()) {
+                kept[k++] = c;
+            } else {
+                for (int i = 0; i < BUCKETS; i++) {
+                    retired[i] += (long) COUNTS.getOpaque(c.counts, i) - c.base[i];
+                }
+            }
+        }
+        cells = kept;
+    }
+
+    public void record(long nanos) {
+        long[] counts = cell.get().counts;
+        int i = index(Math.min(Math.max(nanos, 0), MAX_VALUE));
+        // only this thread writes counts; the opaque store keeps readers from seeing a torn value
+        COUNTS.setOpaque(counts, i, counts[i] + 1);
+    }
+
+    // records the time since start, a System.nanoTime() value from IndicatorMetrics.start();
+    // compiles away when metrics are disabled
+    public void recordSince(long start) {
+        if (IndicatorMetrics.ENABLED) {
+            record(System.nanoTime() - start);
+        }
+    }
+
+    // counts of all cells since the last reset, by bucket
+    private synchronized long[] snapshot() {
+        retireDeadCells();
+        long[] merged = retired.clone();
+        for (Cell c : cells) {
+            for (int i = 0; i < BUCKETS; i++) {
+                merged[i] += (long) COUNTS.getOpaque(c.counts, i) - c.base[i];
+            }
+        }
+        return merged;
+    }
+
+    public long getCount() {
+        return count(snapshot());
+    }
+
+    private static long count(long[] counts) {
+        long total = 0;
+        for (long c : counts) {
+            total += c;
+        }
+        return total;
+    }
+
+    // value at or below which the given fraction of recordings fall (upper edge of its bucket);
+    // 0 when nothing has been recorded
+    public long getValueAtPercentile(double percentile) {
+        return valueAtPercentile(snapshot(), percentile);
+    }
+
+    private static long valueAtPercentile(long[] counts, double percentile) {
+        long total = count(counts);
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return upperBound(i);
+            }
+        }
+        return MAX_VALUE;
+    }
+
+    public long getMax() {
+        return max(snapshot());
+    }
+
+    private static long max(long[] counts) {
+        for (int i = BUCKETS - 1; i >= 0; i--) {
+            if (counts[i] != 0) {
+                return upperBound(i);
+            }
+        }
+        return 0;
+    }
+
+    // Counts are never written by the resetting thread; each cell remembers where it stood and
+    // reads report the difference, so a reset does not race with the threads still recording.
+    public synchronized void reset() {
+        retireDeadCells();
+        Arrays.fill(retired, 0);
+        for (Cell c : cells) {
+            for (int i = 0; i < BUCKETS; i++) {
+                c.base[i] = (long) COUNTS.getOpaque(c.counts, i);
+            }
+        }
+    }
+
+    // one line: name count p50 p90 p99 p99.9 max, in nanoseconds
+    void appendTo(StringBuilder out) {
+        long[] counts = snapshot();
+        out.append(name)
+                .append(" count=").append(count(counts))
+                .append(" p50=").append(valueAtPercentile(counts, 50))
+                .append(" p90=").append(valueAtPercentile(counts, 90))
+                .append(" p99=").append(valueAtPercentile(counts, 99))
+                .append(" p99.9=").append(valueAtPercentile(counts, 99.9))
+                .append(" max=").append(max(counts))
+                .append(" ns\n");
+    }
+
+    private static final class Cell {
+        final long[] counts = new long[BUCKETS]; // written by the owning thread only
+        final long[] base = new long[BUCKETS];   // counts at the last reset, guarded by the histogram
+        // weak, so the histogram does not keep finished threads reachable
+        private final WeakReference<Thread> owner;
+
+        Cell(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+
+        boolean isOwnerAlive() {
+            Thread t = owner.get();
+            return t != null && t.isAlive();
+        }
+    }
+}
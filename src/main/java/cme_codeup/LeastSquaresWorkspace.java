@@ -0,0 +1,162 @@
+package cme_codeup;
+
+import org.apache.commons.math3.linear.Array2DRowRealMatrix;
+import org.apache.commons.math3.linear.ArrayRealVector;
+import org.apache.commons.math3.linear.QRDecomposition;
+import org.apache.commons.math3.linear.RealVector;
+import org.apache.commons.math3.linear.SingularMatrixException;
+
+import java.util.Arrays;
+
+// Least-squares solver for y = b0 + b1*x1 + ... + bd*xd over a subset of rows, reused across
+// RANSAC trials and fits. Features and y are centered on the subset means first, so the intercept
+// drops out and large, tightly clustered values (timestamps, prices) do not cancel in the sums.
+// Up to MAX_CHOLESKY_FEATURES the d x d centered normal equations are accumulated into a
+// preallocated array and solved in place by Cholesky without allocating. Wider models go through
+// commons-math's QR decomposition of the centered design matrix, which allocates per solve.
+final class LeastSquaresWorkspace {
+
+    static final int MAX_CHOLESKY_FEATURES = 8;
+
+    // a pivot below this fraction of its original diagonal marks the system as singular
+    private static final double SINGULARITY_TOLERANCE = 1e-12;
+
+    private final int d;
+    private final double[] mean;
+    private final double[] a;    // d x d row-major, X'X and then its Cholesky factor
+    private final double[] b;    // X'y and then the solution
+    private final double[] diag; // diagonal of X'X before factoring
+
+    LeastSquaresWorkspace(int features) {
+        if (features < 1) {
+            throw new IllegalArgumentException("At least one feature is needed.");
+        }
+        this.d = features;
+        this.mean = new double[features];
+        this.a = new double[features * features];
+        this.b = new double[features];
+        this.diag = new double[features];
+    }
+
+    int getFeatureCount() {
+        return d;
+    }
+
+    // Fits rows idx[0 .. n) of (x, y), where row i has features x[i*d .. i*d + d), and writes
+    // [b0, b1, .., bd] into model. Returns false and leaves model untouched when the rows do not
+    // determine a unique fit (collinear features or n <= d).
+    boolean solve(double[] x, double[] y, int[] idx, int n, double[] model) {
+        if (n <= d) {
+            return false;
+        }
+        double yMean = 0;
+        for (int j = 0; j < d; j++) {
+            mean[j] = 0;
+        }
+        for (int k = 0; k < n; k++) {
+            int row = idx[k] * d;
+            for (int j = 0; j < d; j++) {
+                mean[j] += x[row + j];
+            }
+            yMean += y[idx[k]];
+        }
+        for (int j = 0; j < d; j++) {
+            mean[j] /= n;
+        }
+        yMean /= n;
+
+        boolean solved = d <= MAX_CHOLESKY_FEATURES
+                ? solveCholesky(x, y, idx, n, yMean)
+                : solveQR(x, y, idx, n, yMean);
+        if (!solved) {
+            return false;
+        }
+        double intercept = yMean;
+        for (int j = 0; j < d; j++) {
+            intercept -= b[j] * mean[j];
+            model[j + 1] = b[j];
+        }
+        model[0] = intercept;
+        return true;
+    }
+
+    private boolean solveCholesky(double[] x, double[] y, int[] idx, int n, double yMean) {
+        Arrays.fill(a, 0);
+        Arrays.fill(b, 0);
+        // lower triangle of X'X and X'y over centered rows
+        for (int k = 0; k < n; k++) {
+            int row = idx[k] * d;
+            double dy = y[idx[k]] - yMean;
+            for (int i = 0; i < d; i++) {
+                double di = x[row + i] - mean[i];
+                b[i] += di * dy;
+                int ai = i * d;
+                for (int j = 0; j <= i; j++) {
+                    a[ai + j] += di * (x[row + j] - mean[j]);
+                }
+            }
+        }
+        for (int i = 0; i < d; i++) {
+            diag[i] = a[i * d + i];
+        }
+
+        // in-place A = L L'
+        for (int j = 0; j < d; j++) {
+            double pivot = a[j * d + j];
+            for (int k = 0; k < j; k++) {
+                pivot -= a[j * d + k] * a[j * d + k];
+            }
+            if (!(pivot > SINGULARITY_TOLERANCE * diag[j])) {
+                return false;
+            }
+            pivot = Math.sqrt(pivot);
+            a[j * d + j] = pivot;
+            for (int i = j + 1; i < d; i++) {
+                double s = a[i * d + j];
+                for (int k = 0; k < j; k++) {
+                    s -= a[i * d + k] * a[j * d + k];
+                }
+                a[i * d + j] = s / pivot;
+            }
+        }
+
+        // forward substitution L z = X'y, then back substitution L' beta = z
+        for (int i = 0; i < d; i++) {
+            double s = b[i];
+            for (int k = 0; k < i; k++) {
+                s -= a[i * d + k] * b[k];
+            }
+            b[i] = s / a[i * d + i];
+        }
+        for (int i = d - 1; i >= 0; i--) {
+            double s = b[i];
+            for (int k = i + 1; k < d; k++) {
+                s -= a[k * d + i] * b[k];
+            }
+            b[i] = s / a[i * d + i];
+        }
+        return true;
+    }
+
+    private boolean solveQR(double[] x, double[] y, int[] idx, int n, double yMean) {
+        double[][] design = new double[n][d];
+        double[] target = new double[n];
+        for (int k = 0; k < n; k++) {
+            int row = idx[k] * d;
+            for (int j = 0; j < d; j++) {
+                design[k][j] = x[row + j] - mean[j];
+            }
+            target[k] = y[idx[k]] - yMean;
+        }
+        try {
+            RealVector beta = new QRDecomposition(new Array2DRowRealMatrix(design, false), SINGULARITY_TOLERANCE)
+                    .getSolver().solve(new ArrayRealVector(target, false));
+            for (int j = 0; j < d; j++) {
+                b[j] = beta.getEntry(j);
+            }
+            return true;
+        } catch (SingularMatrixException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package cme_codeup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Fits a RANSAC line to each of many equal-length windows stored back to back in one double[]
+// (window w is windows[w * windowLength .. (w + 1) * windowLength), x = 1..windowLength), and writes
+// intercepts, slopes and inlier counts into caller-owned primitive arrays. Every window runs
+// RANSACTrials.search, the trial loop RANSACRegressorNaive uses, then a closed-form least-squares
+// refit on the consensus set.
+//
+// In parallel mode windows are claimed in chunks by `parallelism` tasks. Scratch buffers are per
+// thread and kept for later calls, so fit() may run concurrently from several threads on one
+// fitter; the setters must not be called while a fit is running. Each window draws from a random
+// stream derived from the seed and its index, so results do not depend on how windows were spread
+// over threads.
+public class RANSACBatchFitter {
+
+    // windows claimed per grab in parallel mode
+    private static final int CHUNK = 32;
+
+    private final int windowLength;
+    private final int maxTrials;
+    private final double residualThreshold;
+    private boolean adaptiveTrials;
+    private double desiredProbability = RANSACTrials.DEFAULT_PROBABILITY;
+    private long seed = 1;
+
+    private final ThreadLocal<Scratch> scratch;
+
+    // residualThreshold <= 0 picks a threshold per window, the standard deviation of the OLS
+    // residuals as RANSACRegressor does when constructed without one
+    public RANSACBatchFitter(int windowLength, int maxTrials, double residualThreshold) {
+        if (windowLength < 2) {
+            throw new IllegalArgumentException("At least two data points are needed to fit the model.");
+        }
+        this.windowLength = windowLength;
+        this.maxTrials = maxTrials;
+        this.residualThreshold = residualThreshold;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(windowLength));
+    }
+
+    public void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Stop each window's search once desiredProbability of having drawn an all-inlier pair is reached
+    public void setAdaptiveTrials(boolean adaptiveTrials, double desiredProbability) {
+        this.adaptiveTrials = adaptiveTrials;
+        this.desiredProbability = desiredProbability;
+    }
+
+    public int getWindowLength() {
+        return windowLength;
+    }
+
+    // Fits windows 0 .. count-1 on the calling thread
+    public void fit(double[] windows, int count, double[] intercepts, double[] slopes, int[] inlierCounts) {
+        checkArguments(windows, count, intercepts, slopes, inlierCounts);
+        Scratch s = scratch.get();
+        for (int w = 0; w < count; w++) {
+            fitWindow(windows, w, s, intercepts, slopes, inlierCounts);
+        }
+    }
+
+    // Fits windows 0 .. count-1 on executor with `parallelism` tasks; results are identical to fit()
+    public void fit(double[] windows, int count, double[] intercepts, double[] slopes, int[] inlierCounts,
+                    ExecutorService executor, int parallelism) {
+        checkArguments(windows, count, intercepts, slopes, inlierCounts);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        AtomicInteger next = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(parallelism);
+        for (int t = 0; t < parallelism; t++) {
+            tasks.add(() -> {
+                Scratch s = scratch.get();
+                int first;
+                while ((first = next.getAndAdd(CHUNK)) < count) {
+                    int end = Math.min(count, first + CHUNK);
+                    for (int w = first; w < end; w++) {
+                        fitWindow(windows, w, s, intercepts, slopes, inlierCounts);
+                    }
+                }
+                return null;
+            });
+        }
+        try {
+            for (Future<Void> f : executor.invokeAll(tasks)) {
+                f.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while fitting windows.", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Window fit failed.", e.getCause());
+        }
+    }
+
+    private void checkArguments(double[] windows, int count, double[] intercepts, double[] slopes, int[] inlierCounts) {
+        if (count < 0 || (long) count * windowLength > windows.length) {
+            throw new IllegalArgumentException(count + " windows of " + windowLength + " points do not fit in "
+                    + windows.length + " values");
+        }
+        if (intercepts.length < count || slopes.length < count || inlierCounts.length < count) {
+            throw new IllegalArgumentException("Output arrays must hold " + count + " windows");
+        }
+    }
+
+    private void fitWindow(double[] windows, int w, Scratch s, double[] intercepts, double[] slopes, int[] inlierCounts) {
+        int n = windowLength;
+        double[] y = s.y;
+        System.arraycopy(windows, w * n, y, 0, n);
+        double threshold = residualThreshold > 0 ? residualThreshold : defaultThreshold(y, n);
+
+        // golden-ratio stride spreads neighbouring window indices over unrelated streams
+        s.random.reseed(seed + w * 0x9E3779B97F4A7C15L);
+        s.model[0] = 0;
+        s.model[1] = 0;
+        int best = RANSACTrials.search(y, n, maxTrials, threshold, adaptiveTrials ? desiredProbability : 0,
+                s.random, s.pair, s.model, s.bestBits, s.trialBits, s.trialsRun);
+        if (best >= 2) {
+            RANSACTrials.toIndices(s.bestBits, n, s.indices);
+            RANSACRegressor.fitLineClosedForm(y, s.indices, best, s.model);
+        }
+        intercepts[w] = s.model[0];
+        slopes[w] = s.model[1];
+        inlierCounts[w] = best;
+    }
+
+    // RANSACTrials.residualStdDev of the window, with sums centered on its first point
+    static double defaultThreshold(double[] y, int n) {
+        double ref = y[0];
+        double sumY = 0;
+        double sumXY = 0;
+        double sumYY = 0;
+        for (int i = 0; i < n; i++) {
+            double v = y[i] - ref;
+            sumY += v;
+            sumXY += (i + 1) * v;
+            sumYY += v * v;
+        }
+        return RANSACTrials.residualStdDev(n, sumY, sumXY, sumYY);
+    }
+
+    private static final class Scratch {
+        private final double[] y;
+        private final int[] indices;
+        private final int[] pair = new int[2];
+        private final double[] model = new double[2];
+        private final int[] trialsRun = new int[1];
+        private final long[] bestBits;
+        private final long[] trialBits;
+        private final RANSACTrials.TrialRandom random = new RANSACTrials.TrialRandom();
+
+        Scratch(int n) {
+            this.y = new double[n];
+            this.indices = new int[n];
+            this.bestBits = new long[RANSACTrials.bitsetWords(n)];
+            this.trialBits = new long[RANSACTrials.bitsetWords(n)];
+        }
+    }
+
+    private static void test() throws InterruptedException {
+        int windows = 5000;
+        int length = 100;
+        double[] data = new double[windows * length];
+        Random random = new Random(4);
+        for (int w = 0; w < windows; w++) {
+            double slope = random.nextGaussian();
+            for (int i = 0; i < length; i++) {
+                double outlier = random.nextDouble() < 0.2 ? 20 * random.nextGaussian() : 0;
+                data[w * length + i] = 5000 + slope * (i + 1) + random.nextGaussian() * 0.5 + outlier;
+            }
+        }
+        RANSACBatchFitter fitter = new RANSACBatchFitter(length, 200, 1.0);
+        fitter.setAdaptiveTrials(true, 0.99);
+        double[] intercepts = new double[windows];
+        double[] slopes = new double[windows];
+        int[] inliers = new int[windows];
+        double[] parallelSlopes = new double[windows];
+
+        for (int round = 0; round < 5; round++) {
+            long start = System.nanoTime();
+            fitter.fit(data, windows, intercepts, slopes, inliers);
+            long sequential = System.nanoTime() - start;
+
+            int threads = Runtime.getRuntime().availableProcessors();
+            ExecutorService executor = Executors.newFixedThreadPool(threads);
+            start = System.nanoTime();
+            fitter.fit(data, windows, new double[windows], parallelSlopes, new int[windows], executor, threads);
+            long parallel = System.nanoTime() - start;
+            executor.shutdown();
+
+            int mismatches = 0;
+            for (int w = 0; w < windows; w++) {
+                if (slopes[w] != parallelSlopes[w]) {
+                    mismatches++;
+                }
+            }
+            System.out.println(windows + " windows: sequential " + sequential / 1000 + " us, parallel (" + threads
+                    + " threads) " + parallel / 1000 + " us, mismatches " + mismatches + ", window 0 slope "
+                    + slopes[0] + " with " + inliers[0] + " inliers");
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        test();
+    }
+}
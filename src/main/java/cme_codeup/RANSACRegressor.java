@@ -6,21 +6,19 @@ import org.apache.commons.math3.linear.RealMatrix;
 import org.apache.commons.math3.linear.RealVector;
 import org.apache.commons.math3.linear.ArrayRealVector;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Random;
+import java.nio.ByteBuffer;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 public class RANSACRegressor {
 
     private double desiredProbability;
-    private double[] bestModel;
-    private Deque<Double> dataQueue;
-    private List<Integer> inlierIndices;
+    private final double[] bestModel = new double[2]; // [intercept, slope], valid while hasModel
+    private boolean hasModel;
+    private long[] inlierBits; // inliers of bestModel, bit i = window point i
+    private long[] trialBits;
     private int maxTrials;
     private double residualThreshold;
     private boolean useDefaultMaxTrials;
@@ -28,11 +26,54 @@ public class RANSACRegressor {
     private int windowSize;
     private int lastFitLength; // To keep track of the length of the last fitted array
 
+    // Sliding window as a primitive ring buffer; window[head] is the oldest point (x = 1)
+    private final double[] window;
+    private int head;
+    private int count;
+    private final double[] y; // chronological copy of the window handed to the trial loop
+
+    // Running sums over the window with x = 1..count, kept relative to yRef so sum(y^2) does not
+    // cancel for large prices. sum(x) and sum(x^2) depend only on count and are computed in closed form.
+    private double yRef;
+    private double sumY;
+    private double sumXY;
+    private double sumYY;
+    private int evictionsSinceRecompute;
+
+    // Scratch for the fitting kernel, reused across trials and fits
+    private final double[] trialModel = new double[2];
+    private final int[] sampleIndices = new int[2];
+    private final int[] inlierScratch;
+    private boolean useReferenceSolver; // fit through commons-math instead of the closed form
+    private boolean adaptiveTrials;
+    private int lastTrialCount;
+    private int lastInlierCount; // size of the consensus set of the last fit
+    private final int[] trialsRun = new int[1];
+
+    // Consensus of the last fit, kept for warm-started refits: the trial model whose inliers are in
+    // inlierBits, the threshold they were scored with, and how the window moved since then
+    private boolean hasConsensus;
+    private double consensusIntercept;
+    private double consensusSlope;
+    private double consensusThreshold;
+    private int evictedSinceFit;
+    private SplittableRandom warmRandom;
+
+    // Parallel fit mode and seeding
+    private ExecutorService executor;
+    private int parallelism;
+    private boolean seeded;
+    private long seed;
+
     // Constructor with desiredProbability and default maxTrials and residualThreshold
     public RANSACRegressor(double desiredProbability, int windowSize) {
         this.desiredProbability = desiredProbability;
         this.windowSize = windowSize;
-        this.dataQueue = new ArrayDeque<>(windowSize);
+        this.window = new double[windowSize];
+        this.y = new double[windowSize];
+        this.inlierScratch = new int[windowSize];
+        this.inlierBits = new long[RANSACTrials.bitsetWords(windowSize)];
+        this.trialBits = new long[RANSACTrials.bitsetWords(windowSize)];
         this.useDefaultMaxTrials = true;
         this.useDefaultResidualThreshold = true;
         this.lastFitLength = 0;
@@ -43,53 +84,146 @@ public class RANSACRegressor {
         this.maxTrials = maxTrials;
         this.residualThreshold = residualThreshold;
         this.windowSize = windowSize;
-        this.dataQueue = new ArrayDeque<>(windowSize);
+        this.window = new double[windowSize];
+        this.y = new double[windowSize];
+        this.inlierScratch = new int[windowSize];
+        this.inlierBits = new long[RANSACTrials.bitsetWords(windowSize)];
+        this.trialBits = new long[RANSACTrials.bitsetWords(windowSize)];
         this.useDefaultMaxTrials = false;
         this.useDefaultResidualThreshold = false;
         this.lastFitLength = 0;
     }
 
+    // O(1): overwrites the oldest point once the window is full and updates the running sums
     public void append(double value) {
-        if (dataQueue.size() >= windowSize) {
-            dataQueue.poll();
+        if (windowSize == 0) {
+            return;
+        }
+        if (count == 0) {
+            yRef = value;
+        }
+        double v = value - yRef;
+        if (count < windowSize) {
+            window[(head + count) % windowSize] = value;
+            count++;
+            sumY += v;
+            sumXY += count * v;
+            sumYY += v * v;
+        } else {
+            double evicted = window[head] - yRef;
+            evictedSinceFit++;
+            window[head] = value;
+            head = (head + 1) % windowSize;
+            // every remaining point moves from x to x - 1 and the new one lands at x = windowSize
+            sumXY += windowSize * v - sumY;
+            sumY += v - evicted;
+            sumYY += v * v - evicted * evicted;
+            // add/subtract updates drift slowly; rebuild them once per full turn of the window
+            if (++evictionsSinceRecompute == windowSize) {
+                recomputeSums();
+            }
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // Parallel fit mode: trials are split into blocks of RANSACTrials.BLOCK_SIZE and run on executor,
+    // `parallelism` blocks at a time, each with its own random stream. Trials stop early under the same
+    // rule as on the caller thread, only with setAdaptiveTrials(true). Blocks fit their two-point lines
+    // in closed form, so the parallel mode cannot be combined with setReferenceSolver(true).
+    // Pass null to fit on the caller thread.
+    public void setParallel(ExecutorService executor, int parallelism) {
+        if (executor != null && parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        if (executor != null && useReferenceSolver) {
+            throw new IllegalStateException("The reference solver runs on the caller thread only.");
         }
-        dataQueue.offer(value);
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    // Fixes the random stream so that fits of the same data give the same model, sequential or parallel
+    public void setSeed(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    // Adaptive mode: the trial count shrinks as better consensus sets are found, to the number needed
+    // to draw an all-inlier pair with desiredProbability (0.99 when constructed with explicit maxTrials).
+    // maxTrials stays the upper bound.
+    public void setAdaptiveTrials(boolean adaptiveTrials) {
+        this.adaptiveTrials = adaptiveTrials;
+    }
+
+    // Number of trials the last fit actually ran
+    public int getLastTrialCount() {
+        return lastTrialCount;
+    }
+
+    private double adaptiveProbability() {
+        return desiredProbability > 0 ? desiredProbability : RANSACTrials.DEFAULT_PROBABILITY;
+    }
+
+    // Reference/validation mode: solve every line fit through the commons-math normal-equation
+    // path instead of the closed-form kernel. Much slower; meant for checking results.
+    // Not available in parallel fit mode.
+    public void setReferenceSolver(boolean useReferenceSolver) {
+        if (useReferenceSolver && executor != null) {
+            throw new IllegalStateException("The reference solver runs on the caller thread only.");
+        }
+        this.useReferenceSolver = useReferenceSolver;
+    }
+
+    private void recomputeSums() {
+        double mean = 0;
+        for (int i = 0; i < count; i++) {
+            mean += window[i];
+        }
+        yRef = mean / count;
+        sumY = 0;
+        sumXY = 0;
+        sumYY = 0;
+        for (int i = 0; i < count; i++) {
+            double v = window[(head + i) % windowSize] - yRef;
+            sumY += v;
+            sumXY += (i + 1) * v;
+            sumYY += v * v;
+        }
+        evictionsSinceRecompute = 0;
     }
 
     private void calculateMaxTrials(int nSamples, double outlierRatio, int minSamples) {
         if (useDefaultMaxTrials) {
             this.maxTrials = (int) Math.ceil(Math.log(1 - desiredProbability) / Math.log(1 - Math.pow(1 - outlierRatio, minSamples)));
-            System.out.println("Calculated maxTrials: " + maxTrials);
         }
     }
 
-    private void calculateResidualThreshold(double[] y) {
+    // O(1): the residual of the OLS baseline over the whole window comes straight from the running sums
+    private void calculateResidualThreshold() {
         if (useDefaultResidualThreshold) {
-            double[] initialModel = fitLinearModel(y);
-            double sumSquaredResiduals = 0;
-            for (int i = 0; i < y.length; i++) {
-                double residual = y[i] - predict(new double[]{i + 1}, initialModel);
-                sumSquaredResiduals += residual * residual;
-            }
-            double variance = sumSquaredResiduals / y.length;
-            this.residualThreshold = Math.sqrt(variance);
-            System.out.println("Calculated residualThreshold: " + residualThreshold);
-
-            // If the calculated residual threshold is zero, use a default small value
-            if (this.residualThreshold == 0) {
-                this.residualThreshold = 1e-6;
-                System.out.println("Residual threshold was zero, set to default small value: " + this.residualThreshold);
-            }
+            this.residualThreshold = RANSACTrials.residualStdDev(count, sumY, sumXY, sumYY);
         }
     }
 
     public void fit() {
-        if (dataQueue.isEmpty()) {
+        long start = IndicatorMetrics.start();
+        fitFromScratch();
+        IndicatorMetrics.recordFit(start, lastTrialCount, lastInlierCount, count);
+    }
+
+    private void fitFromScratch() {
+        if (count == 0) {
             throw new IllegalStateException("No data to fit the model.");
         }
+        if (count < 2) {
+            throw new IllegalStateException("At least two data points are needed to fit the model.");
+        }
 
-        double[] y = dataQueue.stream().mapToDouble(Double::doubleValue).toArray();
-        int nSamples = y.length;
+        copyWindow();
+        int nSamples = count;
         int minSamples = 2; // Minimum two points needed to fit a line
         double outlierRatio = 0.5; // Assuming half the data might be outliers
 
@@ -97,84 +231,295 @@ public class RANSACRegressor {
         calculateMaxTrials(nSamples, outlierRatio, minSamples);
 
         // Calculate residualThreshold if not provided
-        calculateResidualThreshold(y);
+        calculateResidualThreshold();
 
-        Random random = new Random();
-
-        bestModel = null;
+        hasModel = false;
         int bestInlierCount = 0;
-
-        for (int trial = 0; trial < maxTrials; trial++) {
-            // Randomly select a subset of the data
-            int[] subsetIndices = random.ints(0, nSamples).distinct().limit(minSamples).toArray();
-            double[] xSubset = new double[subsetIndices.length];
-            double[] ySubset = new double[subsetIndices.length];
-            for (int i = 0; i < subsetIndices.length; i++) {
-                xSubset[i] = subsetIndices[i] + 1;
-                ySubset[i] = y[subsetIndices[i]];
+        double bestIntercept = 0;
+        double bestSlope = 0;
+
+        if (executor != null) {
+            long trialSeed = seeded ? seed : ThreadLocalRandom.current().nextLong();
+            int found = RANSACTrials.runParallel(y, nSamples, maxTrials, residualThreshold, trialSeed,
+                    adaptiveTrials ? adaptiveProbability() : 0, executor, parallelism, trialModel, trialsRun);
+            lastTrialCount = trialsRun[0];
+            if (found > 0) {
+                bestIntercept = trialModel[0];
+                bestSlope = trialModel[1];
+                bestInlierCount = RANSACTrials.scoreInto(y, nSamples, bestIntercept, bestSlope, residualThreshold, inlierBits);
+            }
+        } else {
+            SplittableRandom random = seeded ? new SplittableRandom(seed) : new SplittableRandom();
+            long requiredTrials = maxTrials;
+            int trial = 0;
+            for (; trial < requiredTrials; trial++) {
+                // Randomly select a subset of the data
+                RANSACTrials.samplePair(random, nSamples, sampleIndices);
+
+                // Fit a linear model to the subset
+                fitModel(sampleIndices, minSamples, trialModel);
+
+                // Count inliers
+                int inliers = RANSACTrials.scoreInto(y, nSamples, trialModel[0], trialModel[1], residualThreshold, trialBits);
+
+                // Update the best model if we have found a better one
+                if (inliers > bestInlierCount) {
+                    bestInlierCount = inliers;
+                    bestIntercept = trialModel[0];
+                    bestSlope = trialModel[1];
+                    long[] swap = inlierBits;
+                    inlierBits = trialBits;
+                    trialBits = swap;
+                    if (adaptiveTrials) {
+                        requiredTrials = Math.min(maxTrials,
+                                RANSACTrials.requiredTrials((double) inliers / nSamples, adaptiveProbability(), minSamples));
+                    }
+                }
             }
+            lastTrialCount = trial;
+        }
 
-            // Fit a linear model to the subset
-            double[] model = fitLinearModel(xSubset, ySubset);
+        // Refit the best model using all inliers
+        if (bestInlierCount > 0) {
+            refitInliers(bestIntercept, bestSlope, bestInlierCount, minSamples);
+        } else {
+            // no valid model: getParams() throws until a later fit finds one
+            hasConsensus = false;
+            lastInlierCount = 0;
+        }
 
-            // Count inliers
-            List<Integer> inliers = new ArrayList<>();
-            for (int i = 0; i < nSamples; i++) {
-                double residual = Math.abs(y[i] - predict(new double[]{i + 1}, model));
-                if (residual < residualThreshold) {
-                    inliers.add(i);
+        // Update the lastFitLength
+        lastFitLength = nSamples;
+        evictedSinceFit = 0;
+    }
+
+    // Warm-started refit for sliding windows. The previous consensus model is moved to the new
+    // x origin and re-scored first: when the threshold is unchanged its inlier set is shifted in
+    // place and only the new points are scored, otherwise the window gets one scoring pass. Then
+    // only as many fresh trials run as the adaptive bound for that inlier ratio asks for, to
+    // confirm or replace it. Falls back to fit() when there is nothing to warm-start from.
+    public void refit() {
+        long start = IndicatorMetrics.start();
+        refitWarm();
+        IndicatorMetrics.recordFit(start, lastTrialCount, lastInlierCount, count);
+    }
+
+    private void refitWarm() {
+        if (!hasConsensus || count < 2 || evictedSinceFit >= lastFitLength) {
+            fitFromScratch();
+            return;
+        }
+        copyWindow();
+        int nSamples = count;
+        int minSamples = 2;
+        calculateResidualThreshold();
+
+        // x of every surviving point dropped by evictedSinceFit: y = a + b * (x + e)
+        double intercept = consensusIntercept + consensusSlope * evictedSinceFit;
+        double slope = consensusSlope;
+        int inlierCount;
+        if (residualThreshold == consensusThreshold) {
+            RANSACTrials.shiftDown(inlierBits, evictedSinceFit);
+            for (int i = lastFitLength - evictedSinceFit; i < nSamples; i++) {
+                if (Math.abs(y[i] - (intercept + slope * (i + 1))) < residualThreshold) {
+                    inlierBits[i >>> 6] |= 1L << i;
                 }
             }
-
-            // Update the best model if we have found a better one
-            if (inliers.size() > bestInlierCount) {
-                bestInlierCount = inliers.size();
-                bestModel = model;
-                inlierIndices = inliers;
+            inlierCount = 0;
+            for (long word : inlierBits) {
+                inlierCount += Long.bitCount(word);
             }
+        } else {
+            inlierCount = RANSACTrials.scoreInto(y, nSamples, intercept, slope, residualThreshold, inlierBits);
         }
 
-        // Refit the best model using all inliers
-        if (bestModel != null) {
-            double[] xInliers = new double[inlierIndices.size()];
-            double[] yInliers = new double[inlierIndices.size()];
-            for (int i = 0; i < inlierIndices.size(); i++) {
-                xInliers[i] = inlierIndices.get(i) + 1;
-                yInliers[i] = y[inlierIndices.get(i)];
+        if (warmRandom == null) {
+            warmRandom = seeded ? new SplittableRandom(seed) : new SplittableRandom();
+        }
+        long requiredTrials = Math.min(maxTrials,
+                RANSACTrials.requiredTrials((double) inlierCount / nSamples, adaptiveProbability(), minSamples));
+        int trial = 0;
+        for (; trial < requiredTrials; trial++) {
+            RANSACTrials.samplePair(warmRandom, nSamples, sampleIndices);
+            fitModel(sampleIndices, minSamples, trialModel);
+            int inliers = RANSACTrials.scoreInto(y, nSamples, trialModel[0], trialModel[1], residualThreshold, trialBits);
+            if (inliers > inlierCount) {
+                inlierCount = inliers;
+                intercept = trialModel[0];
+                slope = trialModel[1];
+                long[] swap = inlierBits;
+                inlierBits = trialBits;
+                trialBits = swap;
+                requiredTrials = Math.min(maxTrials,
+                        RANSACTrials.requiredTrials((double) inliers / nSamples, adaptiveProbability(), minSamples));
             }
-            bestModel = fitLinearModel(xInliers, yInliers);
+        }
+        lastTrialCount = trial;
+
+        if (inlierCount > 0) {
+            refitInliers(intercept, slope, inlierCount, minSamples);
         } else {
-            System.out.println("No valid model found. Try adjusting parameters.");
+            // the old consensus no longer fits anything; start over
+            fitFromScratch();
+            return;
         }
+        lastFitLength = nSamples;
+        evictedSinceFit = 0;
+    }
 
-        // Update the lastFitLength
-        lastFitLength = y.length;
+    public void appendAndRefit(double value) {
+        append(value);
+        refit();
+    }
+
+    // Least squares over the inliers in inlierBits; records (intercept, slope) as the consensus
+    private void refitInliers(double intercept, double slope, int inlierCount, int minSamples) {
+        bestModel[0] = intercept;
+        bestModel[1] = slope;
+        hasModel = true;
+        lastInlierCount = inlierCount;
+        if (inlierCount >= minSamples) {
+            RANSACTrials.toIndices(inlierBits, count, inlierScratch);
+            fitModel(inlierScratch, inlierCount, bestModel);
+        }
+        hasConsensus = true;
+        consensusIntercept = intercept;
+        consensusSlope = slope;
+        consensusThreshold = residualThreshold;
+    }
+
+    // checkpoint layout: int windowSize (checked on restore), int count, double[count] window oldest
+    // first, double residualThreshold, int maxTrials, byte hasModel, double[2] bestModel,
+    // int lastFitLength, int lastInlierCount, int lastTrialCount, byte hasConsensus,
+    // double consensusIntercept/Slope/Threshold, int evictedSinceFit, long[] inlierBits
+    int stateBytes() {
+        return 8 + 8 * count + 8 + 4 + 1 + 16 + 4 + 8 + 1 + 24 + 4 + 8 * inlierBits.length;
+    }
+
+    void writeState(ByteBuffer buf) {
+        copyWindow();
+        buf.putInt(windowSize).putInt(count);
+        IndicatorCheckpoint.putDoubles(buf, y, count);
+        buf.putDouble(residualThreshold);
+        buf.putInt(maxTrials);
+        buf.put((byte) (hasModel ? 1 : 0));
+        buf.putDouble(hasModel ? bestModel[0] : 0).putDouble(hasModel ? bestModel[1] : 0);
+        buf.putInt(lastFitLength);
+        buf.putInt(lastInlierCount).putInt(lastTrialCount);
+        buf.put((byte) (hasConsensus ? 1 : 0));
+        buf.putDouble(consensusIntercept).putDouble(consensusSlope).putDouble(consensusThreshold);
+        buf.putInt(evictedSinceFit);
+        IndicatorCheckpoint.putLongs(buf, inlierBits);
+    }
+
+    // The window is restored unrotated (head = 0) and the running sums rebuilt from it. The threshold
+    // and maxTrials are taken from the checkpoint only where this instance derives them itself; a
+    // warm refit needs the derived maxTrials, since only fitFromScratch computes it.
+    void readState(ByteBuffer buf) {
+        IndicatorCheckpoint.checkConfig("RANSACRegressor windowSize", windowSize, buf.getInt());
+        int n = buf.getInt();
+        if (n < 0 || n > windowSize) {
+            throw new IllegalStateException("Checkpoint window holds " + n + " points, window size is " + windowSize);
+        }
+        IndicatorCheckpoint.getDoubles(buf, window, n);
+        head = 0;
+        count = n;
+        if (count > 0) {
+            recomputeSums();
+        } else {
+            yRef = sumY = sumXY = sumYY = 0;
+            evictionsSinceRecompute = 0;
+        }
+        double threshold = buf.getDouble();
+        if (useDefaultResidualThreshold) {
+            residualThreshold = threshold;
+        }
+        int trials = buf.getInt();
+        if (useDefaultMaxTrials) {
+            maxTrials = trials;
+        }
+        hasModel = buf.get() != 0;
+        bestModel[0] = buf.getDouble();
+        bestModel[1] = buf.getDouble();
+        lastFitLength = buf.getInt();
+        lastInlierCount = buf.getInt();
+        lastTrialCount = buf.getInt();
+        hasConsensus = buf.get() != 0;
+        consensusIntercept = buf.getDouble();
+        consensusSlope = buf.getDouble();
+        consensusThreshold = buf.getDouble();
+        evictedSinceFit = buf.getInt();
+        IndicatorCheckpoint.getLongs(buf, inlierBits);
+        warmRandom = null;
+    }
+
+    // Copy the ring buffer into chronological order, x = index + 1
+    private void copyWindow() {
+        int firstPart = Math.min(count, windowSize - head);
+        System.arraycopy(window, head, y, 0, firstPart);
+        System.arraycopy(window, 0, y, firstPart, count - firstPart);
     }
 
     public double[] predict(double... xValues) {
-        if (bestModel == null) {
+        if (!hasModel) {
             throw new IllegalStateException("Model has not been fitted or no valid model found.");
         }
         double[] predictions = new double[xValues.length];
         for (int i = 0; i < xValues.length; i++) {
-            predictions[i] = predict(new double[]{xValues[i]}, bestModel);
+            predictions[i] = bestModel[0] + bestModel[1] * xValues[i];
         }
         return predictions;
     }
 
     public double[] next(int x) {
-        if (bestModel == null) {
+        if (!hasModel) {
             throw new IllegalStateException("Model has not been fitted or no valid model found.");
         }
         double[] predictions = new double[x];
         for (int i = 0; i < x; i++) {
-            predictions[i] = predict(new double[]{lastFitLength + i + 1}, bestModel);
+            predictions[i] = bestModel[0] + bestModel[1] * (lastFitLength + i + 1);
         }
         return predictions;
     }
 
-    private double predict(double[] x, double[] model) {
-        return model[0] + model[1] * x[0];
+    // Fits a line through the points (idx[k] + 1, y[idx[k]]) for k < n and writes [intercept, slope] into model
+    private void fitModel(int[] idx, int n, double[] model) {
+        if (useReferenceSolver) {
+            double[] xSubset = new double[n];
+            double[] ySubset = new double[n];
+            for (int k = 0; k < n; k++) {
+                xSubset[k] = idx[k] + 1;
+                ySubset[k] = y[idx[k]];
+            }
+            double[] theta = fitLinearModel(xSubset, ySubset);
+            model[0] = theta[0];
+            model[1] = theta[1];
+        } else {
+            fitLineClosedForm(y, idx, n, model);
+        }
+    }
+
+    // Closed-form least squares, allocation-free. Sums are taken around the means, so the
+    // result stays accurate when x (or y) is large compared to its spread.
+    static void fitLineClosedForm(double[] y, int[] idx, int n, double[] model) {
+        double xMean = 0;
+        double yMean = 0;
+        for (int k = 0; k < n; k++) {
+            xMean += idx[k] + 1;
+            yMean += y[idx[k]];
+        }
+        xMean /= n;
+        yMean /= n;
+        double sxx = 0;
+        double sxy = 0;
+        for (int k = 0; k < n; k++) {
+            double dx = idx[k] + 1 - xMean;
+            sxx += dx * dx;
+            sxy += dx * (y[idx[k]] - yMean);
+        }
+        double slope = sxy / sxx;
+        model[0] = yMean - slope * xMean;
+        model[1] = slope;
     }
 
     private double[] fitLinearModel(double[] x, double[] y) {
@@ -210,42 +555,14 @@ public class RANSACRegressor {
         return theta.toArray();
     }
 
-    // Simplified version for single y array
-    private double[] fitLinearModel(double[] y) {
-        int n = y.length;
-
-        // Construct the design matrix X
-        double[][] X = new double[n][2];
-        for (int i = 0; i < n; i++) {
-            X[i][0] = 1;  // Intercept term
-            X[i][1] = i + 1;
-        }
-
-        // Convert to RealMatrix
-        RealMatrix XMatrix = new Array2DRowRealMatrix(X);
-
-        // Convert y to RealVector
-        RealVector yVector = new ArrayRealVector(y);
-
-        // Compute X^T * X
-        RealMatrix XT = XMatrix.transpose();
-        RealMatrix XTX = XT.multiply(XMatrix);
-
-        // Compute (X^T * X)^-1
-        RealMatrix XTXInv = new LUDecomposition(XTX).getSolver().getInverse();
-
-        // Compute X^T * y
-        RealVector XTy = XT.operate(yVector);
-
-        // Compute theta = (X^T * X)^-1 * X^T * y
-        RealVector theta = XTXInv.operate(XTy);
-
-        // Return as double array
-        return theta.toArray();
+    // false before the first fit and after a fit that found no model; getParams() throws then
+    public boolean hasModel() {
+        return hasModel;
     }
 
+    // [intercept, slope] of the last fit; the array is reused, so copy it to keep it across fits
     public double[] getParams() {
-        if (bestModel == null) {
+        if (!hasModel) {
             throw new IllegalStateException("Model has not been fitted or no valid model found.");
         }
         return bestModel;
@@ -0,0 +1,318 @@
+package cme_codeup;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+
+// RANSAC fit of y = b0 + b1*x1 + ... + bd*xd over a sliding window of rows, for regressing price
+// on several features at once (time, volume, spread, ...). RANSACRegressor stays the fast path for
+// the single implicit time feature; this class takes the features explicitly with every point.
+//
+// Each trial draws d + 1 distinct rows (a partial shuffle of a reused index permutation, O(d) per
+// trial), solves them exactly and scores the window into a bitset; the best consensus set is then
+// refit by least squares. All solves go through one LeastSquaresWorkspace, so trials and fits do
+// not allocate up to LeastSquaresWorkspace.MAX_CHOLESKY_FEATURES features.
+public class RANSACRegressorMultivariate {
+
+    private final int features;
+    private final int windowSize;
+    private final int minSamples;
+    private final double desiredProbability;
+    private final boolean useDefaultMaxTrials;
+    private final boolean useDefaultResidualThreshold;
+    private int maxTrials;
+    private double residualThreshold;
+
+    // Sliding window as primitive ring buffers; row r has features windowX[r*features ..]
+    private final double[] windowX;
+    private final double[] windowY;
+    private int head;
+    private int count;
+
+    // chronological copies handed to the trial loop
+    private final double[] x;
+    private final double[] y;
+
+    // Scratch reused across trials and fits
+    private final LeastSquaresWorkspace workspace;
+    private final int[] permutation;
+    private final int[] inlierScratch;
+    private final double[] trialModel;
+    private double[] bestModel;
+    private long[] inlierBits;
+    private long[] trialBits;
+    private boolean hasModel;
+
+    private boolean adaptiveTrials;
+    private boolean seeded;
+    private long seed;
+    private int lastTrialCount;
+    private int lastInlierCount;
+
+    // Constructor with desiredProbability and default maxTrials and residualThreshold
+    public RANSACRegressorMultivariate(int features, double desiredProbability, int windowSize) {
+        this(features, windowSize, desiredProbability, 0, 0, true);
+    }
+
+    // Constructor with specified maxTrials and residualThreshold
+    public RANSACRegressorMultivariate(int features, int maxTrials, double residualThreshold, int windowSize) {
+        this(features, windowSize, 0, maxTrials, residualThreshold, false);
+    }
+
+    private RANSACRegressorMultivariate(int features, int windowSize, double desiredProbability, int maxTrials,
+                                        double residualThreshold, boolean useDefaults) {
+        if (features < 1) {
+            throw new IllegalArgumentException("At least one feature is needed.");
+        }
+        if (windowSize < features + 1) {
+            throw new IllegalArgumentException("windowSize must be at least features + 1 = " + (features + 1));
+        }
+        this.features = features;
+        this.windowSize = windowSize;
+        this.minSamples = features + 1;
+        this.desiredProbability = desiredProbability;
+        this.maxTrials = maxTrials;
+        this.residualThreshold = residualThreshold;
+        this.useDefaultMaxTrials = useDefaults;
+        this.useDefaultResidualThreshold = useDefaults;
+        this.windowX = new double[windowSize * features];
+        this.windowY = new double[windowSize];
+        this.x = new double[windowSize * features];
+        this.y = new double[windowSize];
+        this.workspace = new LeastSquaresWorkspace(features);
+        this.permutation = new int[windowSize];
+        this.inlierScratch = new int[windowSize];
+        this.trialModel = new double[features + 1];
+        this.bestModel = new double[features + 1];
+        this.inlierBits = new long[RANSACTrials.bitsetWords(windowSize)];
+        this.trialBits = new long[RANSACTrials.bitsetWords(windowSize)];
+    }
+
+    // O(features): copies the row in, overwriting the oldest once the window is full
+    public void append(double value, double[] rowFeatures) {
+        if (rowFeatures.length != features) {
+            throw new IllegalArgumentException("Expected " + features + " features, got " + rowFeatures.length);
+        }
+        int slot;
+        if (count < windowSize) {
+            slot = (head + count) % windowSize;
+            count++;
+        } else {
+            slot = head;
+            head = (head + 1) % windowSize;
+        }
+        windowY[slot] = value;
+        System.arraycopy(rowFeatures, 0, windowX, slot * features, features);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getFeatureCount() {
+        return features;
+    }
+
+    public void setSeed(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    // Stop once the trial count needed for the current best inlier ratio (at desiredProbability,
+    // or 0.99 when constructed with explicit maxTrials) is reached
+    public void setAdaptiveTrials(boolean adaptiveTrials) {
+        this.adaptiveTrials = adaptiveTrials;
+    }
+
+    public int getLastTrialCount() {
+        return lastTrialCount;
+    }
+
+    public int getLastInlierCount() {
+        return lastInlierCount;
+    }
+
+    public void fit() {
+        long start = IndicatorMetrics.start();
+        fitWindow();
+        IndicatorMetrics.recordFit(start, lastTrialCount, lastInlierCount, count);
+    }
+
+    private void fitWindow() {
+        if (count < minSamples) {
+            throw new IllegalStateException("At least " + minSamples + " data points are needed to fit the model.");
+        }
+        copyWindow();
+        int n = count;
+        // restart from the identity so a seeded fit draws the same samples every time
+        for (int i = 0; i < n; i++) {
+            permutation[i] = i;
+        }
+        if (useDefaultMaxTrials) {
+            // assuming half the data might be outliers
+            maxTrials = (int) Math.ceil(Math.log(1 - desiredProbability) / Math.log(1 - Math.pow(0.5, minSamples)));
+        }
+        if (useDefaultResidualThreshold) {
+            residualThreshold = baselineResidualThreshold(n);
+        }
+        double p = desiredProbability > 0 ? desiredProbability : RANSACTrials.DEFAULT_PROBABILITY;
+
+        SplittableRandom random = seeded ? new SplittableRandom(seed) : new SplittableRandom();
+        int best = 0;
+        long requiredTrials = maxTrials;
+        int trial = 0;
+        for (; trial < requiredTrials; trial++) {
+            // partial Fisher-Yates: permutation[0 .. minSamples) becomes a uniform sample of distinct rows
+            for (int k = 0; k < minSamples; k++) {
+                int j = k + random.nextInt(n - k);
+                int swap = permutation[k];
+                permutation[k] = permutation[j];
+                permutation[j] = swap;
+            }
+            if (!workspace.solve(x, y, permutation, minSamples, trialModel)) {
+                continue; // degenerate sample
+            }
+            int inliers = scoreInto(trialModel, n, residualThreshold, trialBits);
+            if (inliers > best) {
+                best = inliers;
+                System.arraycopy(trialModel, 0, bestModel, 0, minSamples);
+                long[] swap = inlierBits;
+                inlierBits = trialBits;
+                trialBits = swap;
+                if (adaptiveTrials) {
+                    requiredTrials = Math.min(maxTrials, RANSACTrials.requiredTrials((double) inliers / n, p, minSamples));
+                }
+            }
+        }
+        lastTrialCount = trial;
+
+        if (best == 0) {
+            // no valid model: getParams() throws until a later fit finds one
+            hasModel = false;
+            lastInlierCount = 0;
+            return;
+        }
+        // refit on the consensus set; a degenerate consensus keeps the trial model
+        int inliers = RANSACTrials.toIndices(inlierBits, n, inlierScratch);
+        workspace.solve(x, y, inlierScratch, inliers, bestModel);
+        hasModel = true;
+        lastInlierCount = inliers;
+    }
+
+    // Standard deviation of the residuals of the OLS fit over the whole window, 1e-6 when the
+    // window fits exactly or its features are degenerate
+    private double baselineResidualThreshold(int n) {
+        for (int i = 0; i < n; i++) {
+            inlierScratch[i] = i;
+        }
+        if (!workspace.solve(x, y, inlierScratch, n, trialModel)) {
+            return 1e-6;
+        }
+        double sumSquaredResiduals = 0;
+        for (int i = 0; i < n; i++) {
+            double r = y[i] - predictRow(trialModel, i);
+            sumSquaredResiduals += r * r;
+        }
+        double threshold = Math.sqrt(sumSquaredResiduals / n);
+        return threshold == 0 ? 1e-6 : threshold;
+    }
+
+    // Marks the rows within threshold of the model in bits and returns how many there are
+    private int scoreInto(double[] model, int n, double threshold, long[] bits) {
+        int inliers = 0;
+        for (int w = 0, base = 0; base < n; w++, base += 64) {
+            int end = Math.min(64, n - base);
+            long word = 0;
+            for (int b = 0; b < end; b++) {
+                if (Math.abs(y[base + b] - predictRow(model, base + b)) < threshold) {
+                    word |= 1L << b;
+                }
+            }
+            bits[w] = word;
+            inliers += Long.bitCount(word);
+        }
+        return inliers;
+    }
+
+    private double predictRow(double[] model, int row) {
+        double value = model[0];
+        int offset = row * features;
+        for (int j = 0; j < features; j++) {
+            value += model[j + 1] * x[offset + j];
+        }
+        return value;
+    }
+
+    // Copy the ring buffers into chronological order
+    private void copyWindow() {
+        int firstPart = Math.min(count, windowSize - head);
+        System.arraycopy(windowY, head, y, 0, firstPart);
+        System.arraycopy(windowY, 0, y, firstPart, count - firstPart);
+        System.arraycopy(windowX, head * features, x, 0, firstPart * features);
+        System.arraycopy(windowX, 0, x, firstPart * features, (count - firstPart) * features);
+    }
+
+    // b0 + b1*x1 + ... + bd*xd for one row of features
+    public double predict(double[] rowFeatures) {
+        if (!hasModel) {
+            throw new IllegalStateException("Model has not been fitted or no valid model found.");
+        }
+        double value = bestModel[0];
+        for (int j = 0; j < features; j++) {
+            value += bestModel[j + 1] * rowFeatures[j];
+        }
+        return value;
+    }
+
+    // [b0, b1, .., bd]
+    public double[] getParams() {
+        if (!hasModel) {
+            throw new IllegalStateException("Model has not been fitted or no valid model found.");
+        }
+        return bestModel;
+    }
+
+    private static void test(int features, int windowSize) {
+        RANSACRegressorMultivariate ransac = new RANSACRegressorMultivariate(features, 500, 1.0, windowSize);
+        ransac.setSeed(7);
+        ransac.setAdaptiveTrials(true);
+        double[] truth = new double[features + 1];
+        Random random = new Random(features);
+        for (int j = 0; j <= features; j++) {
+            truth[j] = random.nextGaussian();
+        }
+        truth[0] = 5000;
+        double[] row = new double[features];
+        for (int t = 0; t < 5 * windowSize; t++) {
+            double value = truth[0];
+            for (int j = 0; j < features; j++) {
+                // first feature is a timestamp-like index, the rest are noisy regressors
+                row[j] = j == 0 ? 1_700_000_000 + t : 10 * random.nextGaussian();
+                value += truth[j + 1] * row[j];
+            }
+            value += 0.3 * random.nextGaussian() + (random.nextDouble() < 0.2 ? 40 * random.nextGaussian() : 0);
+            ransac.append(value, row);
+        }
+
+        long start = System.nanoTime();
+        int fits = 200;
+        for (int i = 0; i < fits; i++) {
+            ransac.fit();
+        }
+        long elapsed = System.nanoTime() - start;
+        double[] params = ransac.getParams();
+        double maxError = 0;
+        for (int j = 1; j <= features; j++) {
+            maxError = Math.max(maxError, Math.abs(params[j] - truth[j]));
+        }
+        System.out.println(features + " features, window " + windowSize + ": " + elapsed / fits / 1000 + " us/fit, "
+                + ransac.getLastTrialCount() + " trials, " + ransac.getLastInlierCount() + " inliers, max coefficient error "
+                + maxError);
+    }
+
+    public static void main(String[] args) {
+        test(1, 200);
+        test(3, 200);
+        test(6, 500);
+        test(12, 500); // past MAX_CHOLESKY_FEATURES: commons-math QR
+    }
+}
@@ -1,20 +1,32 @@
 package cme_codeup;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class RANSACRegressorNaive {
 
     private double desiredProbability;
-    private double[] bestModel;
-    private List<Integer> inlierIndices;
+    private final double[] bestModel = new double[2]; // [intercept, slope], valid while hasModel
+    private boolean hasModel;
+    private long[] inlierBits = new long[0]; // inliers of bestModel, bit i = point i
+    private long[] trialBits = new long[0];
+    private final int[] sampleIndices = new int[2];
     private int maxTrials;
     private double residualThreshold;
     private boolean useDefaultMaxTrials;
     private boolean useDefaultResidualThreshold;
     private int lastFitLength; // To keep track of the length of the last fitted array
 
+    // Parallel fit mode and seeding
+    private ExecutorService executor;
+    private int parallelism;
+    private boolean seeded;
+    private long seed;
+    private boolean adaptiveTrials;
+    private int lastTrialCount;
+    private final int[] trialsRun = new int[1];
+
     // Constructor with desiredProbability and default maxTrials and residualThreshold
     public RANSACRegressorNaive(double desiredProbability) {
         this.desiredProbability = desiredProbability;
@@ -32,10 +44,42 @@ public class RANSACRegressorNaive {
         this.lastFitLength = 0;
     }
 
+    // Parallel fit mode: trials are split into blocks of RANSACTrials.BLOCK_SIZE and run on executor,
+    // `parallelism` blocks at a time, each with its own random stream. Trials stop early under the same
+    // rule as on the caller thread, only with setAdaptiveTrials(true). Pass null to fit on the caller thread.
+    public void setParallel(ExecutorService executor, int parallelism) {
+        if (executor != null && parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1");
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+    }
+
+    // Fixes the random stream so that fits of the same data give the same model, sequential or parallel
+    public void setSeed(long seed) {
+        this.seeded = true;
+        this.seed = seed;
+    }
+
+    // Adaptive mode: the trial count shrinks as better consensus sets are found, to the number needed
+    // to draw an all-inlier pair with desiredProbability (0.99 when constructed with explicit maxTrials).
+    // maxTrials stays the upper bound.
+    public void setAdaptiveTrials(boolean adaptiveTrials) {
+        this.adaptiveTrials = adaptiveTrials;
+    }
+
+    // Number of trials the last fit actually ran
+    public int getLastTrialCount() {
+        return lastTrialCount;
+    }
+
+    private double adaptiveProbability() {
+        return desiredProbability > 0 ? desiredProbability : RANSACTrials.DEFAULT_PROBABILITY;
+    }
+
     private void calculateMaxTrials(int nSamples, double outlierRatio, int minSamples) {
         if (useDefaultMaxTrials) {
             this.maxTrials = (int) Math.ceil(Math.log(1 - desiredProbability) / Math.log(1 - Math.pow(1 - outlierRatio, minSamples)));
-            System.out.println("Calculated maxTrials: " + maxTrials);
         }
     }
 
@@ -49,17 +93,19 @@ public class RANSACRegressorNaive {
             }
             double variance = sumSquaredResiduals / y.length;
             this.residualThreshold = Math.sqrt(variance);
-            System.out.println("Calculated residualThreshold: " + residualThreshold);
 
             // If the calculated residual threshold is zero, use a default small value
             if (this.residualThreshold == 0) {
                 this.residualThreshold = 1e-6;
-                System.out.println("Residual threshold was zero, set to default small value: " + this.residualThreshold);
             }
         }
     }
 
     public void fit(double[] y) {
+        if (y.length < 2) {
+            throw new IllegalArgumentException("At least two data points are needed to fit the model.");
+        }
+        long start = IndicatorMetrics.start();
         int nSamples = y.length;
         int minSamples = 2; // Minimum two points needed to fit a line
         double outlierRatio = 0.5; // Assuming half the data might be outliers
@@ -70,60 +116,53 @@ public class RANSACRegressorNaive {
         // Calculate residualThreshold if not provided
         calculateResidualThreshold(y);
 
-        Random random = new Random();
-
-        bestModel = null;
+        hasModel = false;
         int bestInlierCount = 0;
+        int words = RANSACTrials.bitsetWords(nSamples);
+        if (inlierBits.length < words) {
+            inlierBits = new long[words];
+            trialBits = new long[words];
+        }
 
-        for (int trial = 0; trial < maxTrials; trial++) {
-            // Randomly select a subset of the data
-            int[] subsetIndices = random.ints(0, nSamples).distinct().limit(minSamples).toArray();
-            double[] xSubset = new double[subsetIndices.length];
-            double[] ySubset = new double[subsetIndices.length];
-            for (int i = 0; i < subsetIndices.length; i++) {
-                xSubset[i] = subsetIndices[i] + 1;
-                ySubset[i] = y[subsetIndices[i]];
-            }
-
-            // Fit a linear model to the subset
-            double[] model = fitLinearModel(xSubset, ySubset);
-
-            // Count inliers
-            List<Integer> inliers = new ArrayList<>();
-            for (int i = 0; i < nSamples; i++) {
-                double residual = Math.abs(y[i] - predict(new double[]{i + 1}, model));
-                if (residual < residualThreshold) {
-                    inliers.add(i);
-                }
-            }
-
-            // Update the best model if we have found a better one
-            if (inliers.size() > bestInlierCount) {
-                bestInlierCount = inliers.size();
-                bestModel = model;
-                inlierIndices = inliers;
+        if (executor != null) {
+            long trialSeed = seeded ? seed : ThreadLocalRandom.current().nextLong();
+            int found = RANSACTrials.runParallel(y, nSamples, maxTrials, residualThreshold, trialSeed,
+                    adaptiveTrials ? adaptiveProbability() : 0, executor, parallelism, bestModel, trialsRun);
+            lastTrialCount = trialsRun[0];
+            if (found > 0) {
+                bestInlierCount = RANSACTrials.scoreInto(y, nSamples, bestModel[0], bestModel[1], residualThreshold, inlierBits);
+                hasModel = true;
             }
+        } else {
+            SplittableRandom random = seeded ? new SplittableRandom(seed) : new SplittableRandom();
+            bestInlierCount = RANSACTrials.search(y, nSamples, maxTrials, residualThreshold,
+                    adaptiveTrials ? adaptiveProbability() : 0, random, sampleIndices, bestModel, inlierBits, trialBits, trialsRun);
+            lastTrialCount = trialsRun[0];
+            hasModel = bestInlierCount > 0;
         }
 
         // Refit the best model using all inliers
-        if (bestModel != null) {
-            double[] xInliers = new double[inlierIndices.size()];
-            double[] yInliers = new double[inlierIndices.size()];
-            for (int i = 0; i < inlierIndices.size(); i++) {
-                xInliers[i] = inlierIndices.get(i) + 1;
-                yInliers[i] = y[inlierIndices.get(i)];
+        if (hasModel) {
+            int[] inlierIndices = new int[bestInlierCount];
+            RANSACTrials.toIndices(inlierBits, nSamples, inlierIndices);
+            double[] xInliers = new double[bestInlierCount];
+            double[] yInliers = new double[bestInlierCount];
+            for (int i = 0; i < bestInlierCount; i++) {
+                xInliers[i] = inlierIndices[i] + 1;
+                yInliers[i] = y[inlierIndices[i]];
             }
-            bestModel = fitLinearModel(xInliers, yInliers);
-        } else {
-            System.out.println("No valid model found. Try adjusting parameters.");
+            double[] theta = fitLinearModel(xInliers, yInliers);
+            bestModel[0] = theta[0];
+            bestModel[1] = theta[1];
         }
 
         // Update the lastFitLength
         lastFitLength = y.length;
+        IndicatorMetrics.recordFit(start, lastTrialCount, bestInlierCount, nSamples);
     }
 
     public double[] predict(double... xValues) {
-        if (bestModel == null) {
+        if (!hasModel) {
             throw new IllegalStateException("Model has not been fitted or no valid model found.");
         }
         double[] predictions = new double[xValues.length];
@@ -134,7 +173,7 @@ public class RANSACRegressorNaive {
     }
 
     public double[] next(int x) {
-        if (bestModel == null) {
+        if (!hasModel) {
             throw new IllegalStateException("Model has not been fitted or no valid model found.");
         }
         double[] predictions = new double[x];
@@ -0,0 +1,275 @@
+package cme_codeup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.random.RandomGenerator;
+
+// Trial search shared by RANSACRegressor, RANSACRegressorNaive and RANSACBatchFitter. Draws
+// two-point line models through (i + 1, y[i]) for i < n and keeps the one with the most inliers.
+// Inlier sets are long[] bitsets (bit i = point i) so trials never box or allocate.
+final class RANSACTrials {
+
+    // default confidence for adaptive trial counts when no desiredProbability was given
+    static final double DEFAULT_PROBABILITY = 0.99;
+
+    // trials per task; every block draws from its own SplitMix64 stream
+    static final int BLOCK_SIZE = 64;
+
+    private RANSACTrials() {
+    }
+
+    static int bitsetWords(int n) {
+        return (n + 63) >>> 6;
+    }
+
+    // Marks the points within threshold of the line in bits and returns how many there are
+    static int scoreInto(double[] y, int n, double intercept, double slope, double threshold, long[] bits) {
+        int count = 0;
+        for (int w = 0, base = 0; base < n; w++, base += 64) {
+            int end = Math.min(64, n - base);
+            long word = 0;
+            for (int b = 0; b < end; b++) {
+                int i = base + b;
+                if (Math.abs(y[i] - (intercept + slope * (i + 1))) < threshold) {
+                    word |= 1L << b;
+                }
+            }
+            bits[w] = word;
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    // In-place shift towards bit 0 for a window that dropped its `shift` oldest points:
+    // bit i + shift moves to bit i and the vacated top bits are cleared
+    static void shiftDown(long[] bits, int shift) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        int words = bits.length;
+        for (int w = 0; w < words; w++) {
+            int src = w + wordShift;
+            long lo = src < words ? bits[src] >>> bitShift : 0;
+            long hi = (bitShift != 0 && src + 1 < words) ? bits[src + 1] << (64 - bitShift) : 0;
+            bits[w] = lo | hi;
+        }
+    }
+
+    // Expands a bitset into ascending indices and returns how many were written
+    static int toIndices(long[] bits, int n, int[] out) {
+        int count = 0;
+        for (int w = 0, words = bitsetWords(n); w < words; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                out[count++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return count;
+    }
+
+    // Two distinct indices in [0, n) from two draws, without rejection: the second skips over the first
+    static void samplePair(RandomGenerator random, int n, int[] pair) {
+        int i = random.nextInt(n);
+        int j = random.nextInt(n - 1);
+        if (j >= i) {
+            j++;
+        }
+        pair[0] = i;
+        pair[1] = j;
+    }
+
+    // Sequential search: up to maxTrials two-point trials, each scored into trialBits and copied to
+    // bestBits when it beats the best so far. With adaptiveProbability in (0, 1) the trial count
+    // shrinks to requiredTrials for the best inlier ratio found. The best two-point line goes to
+    // bestModel, trialsRun[0] receives the number of trials run, and the return value is its inlier
+    // count; 0 means no trial had an inlier and bestModel is untouched.
+    static int search(double[] y, int n, int maxTrials, double threshold, double adaptiveProbability,
+                      RandomGenerator random, int[] pair, double[] bestModel, long[] bestBits, long[] trialBits,
+                      int[] trialsRun) {
+        int words = bitsetWords(n);
+        int best = 0;
+        long required = maxTrials;
+        int trial = 0;
+        for (; trial < required; trial++) {
+            samplePair(random, n, pair);
+            int i = pair[0];
+            int j = pair[1];
+            double slope = (y[j] - y[i]) / (j - i);
+            double intercept = y[i] - slope * (i + 1);
+            int inliers = scoreInto(y, n, intercept, slope, threshold, trialBits);
+            if (inliers > best) {
+                best = inliers;
+                bestModel[0] = intercept;
+                bestModel[1] = slope;
+                System.arraycopy(trialBits, 0, bestBits, 0, words);
+                required = Math.min(maxTrials, requiredTrials((double) inliers / n, adaptiveProbability, 2));
+            }
+        }
+        trialsRun[0] = trial;
+        return best;
+    }
+
+    // Standard deviation of the residuals of the OLS line through x = 1..n, from sums of y and x*y
+    // and y^2 taken relative to any reference level (which keeps them from cancelling for large
+    // prices). This is the default residual threshold; 1e-6 for a perfectly straight window.
+    static double residualStdDev(double n, double sumY, double sumXY, double sumYY) {
+        double sumX = n * (n + 1) / 2;
+        double sxx = n * (n * n - 1) / 12; // sum(x^2) - sum(x)^2/n for x = 1..n
+        double sxy = sumXY - sumX * sumY / n;
+        double syy = sumYY - sumY * sumY / n;
+        double threshold = Math.sqrt(Math.max(0, syy - sxy * sxy / sxx) / n);
+        return threshold == 0 ? 1e-6 : threshold;
+    }
+
+    // trials needed to draw an all-inlier pair with probability p when a fraction w of the
+    // points are inliers; no early stopping when p is not in (0, 1)
+    static long requiredTrials(double inlierRatio, double p, int minSamples) {
+        if (!(p > 0 && p < 1)) {
+            return Long.MAX_VALUE;
+        }
+        double denominator = Math.log(1 - Math.pow(inlierRatio, minSamples));
+        if (denominator == 0) {
+            return Long.MAX_VALUE;
+        }
+        return (long) Math.ceil(Math.log(1 - p) / denominator);
+    }
+
+    // Runs maxTrials trials on executor in waves of `parallelism` blocks. Blocks get their seeds
+    // from one SplittableRandom(seed) in block order and results merge in block order, so the
+    // outcome depends only on the seed and the data, not on thread timing. After each wave the
+    // best inlier count so far sets the adaptive bound; the search stops once it is met, and with
+    // desiredProbability outside (0, 1) all maxTrials run. trialsRun[0] receives the number of
+    // trials actually run.
+    static int runParallel(double[] y, int n, int maxTrials, double threshold, long seed, double desiredProbability,
+                           ExecutorService executor, int parallelism, double[] bestModel, int[] trialsRun) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<Block> wave = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            wave.add(new Block(y, n, threshold));
+        }
+
+        int bestInlierCount = 0;
+        int trialsDone = 0;
+        while (trialsDone < maxTrials) {
+            int blocks = 0;
+            for (Block block : wave) {
+                int trials = Math.min(BLOCK_SIZE, maxTrials - trialsDone - blocks * BLOCK_SIZE);
+                if (trials <= 0) {
+                    break;
+                }
+                block.reset(seeds.nextLong(), trials);
+                blocks++;
+            }
+            List<Future<Void>> done;
+            try {
+                done = executor.invokeAll(wave.subList(0, blocks));
+                for (Future<Void> f : done) {
+                    f.get();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while running RANSAC trials.", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("RANSAC trial block failed.", e.getCause());
+            }
+            for (int b = 0; b < blocks; b++) {
+                Block block = wave.get(b);
+                trialsDone += block.trials;
+                if (block.bestInlierCount > bestInlierCount) {
+                    bestInlierCount = block.bestInlierCount;
+                    bestModel[0] = block.intercept;
+                    bestModel[1] = block.slope;
+                }
+            }
+            if (trialsDone >= requiredTrials((double) bestInlierCount / n, desiredProbability, 2)) {
+                break;
+            }
+        }
+        trialsRun[0] = trialsDone;
+        return bestInlierCount;
+    }
+
+    static int countInliers(double[] y, int n, double intercept, double slope, double threshold) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            if (Math.abs(y[i] - (intercept + slope * (i + 1))) < threshold) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // SplitMix64 as in SplittableRandom (same gamma and mixing, so TrialRandom seeded with s draws
+    // exactly what new SplittableRandom(s) would) that can be reseeded in place, for callers that
+    // start a fresh deterministic stream per work item without allocating one each time
+    static final class TrialRandom implements RandomGenerator {
+        private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+        private long seed;
+
+        void reseed(long seed) {
+            this.seed = seed;
+        }
+
+        @Override
+        public long nextLong() {
+            long z = (seed += GOLDEN_GAMMA);
+            z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+            z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+            return z ^ (z >>> 31);
+        }
+
+        @Override
+        public int nextInt() {
+            long z = (seed += GOLDEN_GAMMA);
+            z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+            return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+        }
+    }
+
+    private static final class Block implements Callable<Void> {
+        private final double[] y;
+        private final int n;
+        private final double threshold;
+        private final TrialRandom random = new TrialRandom();
+        private final int[] pair = new int[2];
+        private int trials;
+        private int bestInlierCount;
+        private double intercept;
+        private double slope;
+
+        Block(double[] y, int n, double threshold) {
+            this.y = y;
+            this.n = n;
+            this.threshold = threshold;
+        }
+
+        void reset(long seed, int trials) {
+            random.reseed(seed);
+            this.trials = trials;
+            this.bestInlierCount = 0;
+        }
+
+        @Override
+        public Void call() {
+            for (int t = 0; t < trials; t++) {
+                samplePair(random, n, pair);
+                int i = pair[0];
+                int j = pair[1];
+                double s = (y[j] - y[i]) / (j - i);
+                double a = y[i] - s * (i + 1);
+                int inliers = countInliers(y, n, a, s, threshold);
+                if (inliers > bestInlierCount) {
+                    bestInlierCount = inliers;
+                    intercept = a;
+                    slope = s;
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,242 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Random;
+
+// Streaming linear trend: recursive least squares with forgetting factor lambda, updated in O(1)
+// per sample like EMA. Sample t (t = 1, 2, ...) sits at x = t and carries weight lambda^(T - t)
+// at time T, so the fit is an exponentially weighted regression with an effective memory of about
+// 1 / (1 - lambda) samples; lambda = 1 gives ordinary least squares over everything seen.
+//
+// The state is kept in a frame that moves with the newest sample, (level at x = T, slope), and a
+// 2x2 P matrix in that frame. Advancing one sample is level += slope, P = F P F' with
+// F = [[1, 1], [0, 1]]; the update then only sees the regressor (1, 0). This is the same estimator
+// as RLS in absolute x, but nothing grows with T, so P stays well conditioned on long streams.
+//
+// Optional residual gate: a sample whose prior residual is more than gateSigmas times the running
+// residual standard deviation is not fitted. The variance is still fed the clipped residual, so a
+// genuine level shift widens the gate over a few samples and is then followed instead of rejected
+// forever. The standard deviation used for the limit is at least minResidualStdDev (say one tick),
+// and while the running variance is still 0, e.g. after a flat warm-up, nothing is rejected: a limit
+// of 0 would clip every residual to 0 and keep the gate shut for good.
+public class RLSRegressor {
+
+    // starting P on the diagonal; large relative to the data means "no prior"
+    private static final double INITIAL_COVARIANCE = 1e6;
+
+    // samples before the gate starts rejecting
+    private static final int GATE_WARMUP = 10;
+
+    private final double lambda;
+    private final double gateSigmas;
+    private final double minResidualStdDev;
+
+    private double level; // fitted value at x = sampleCount
+    private double slope;
+    private double p00;
+    private double p01;
+    private double p11;
+    private double residualVariance;
+    private long sampleCount;
+    private long rejectedCount;
+    private final double[] params = new double[2];
+
+    // no residual gate
+    public RLSRegressor(double lambda) {
+        this(lambda, 0);
+    }
+
+    // gateSigmas <= 0 turns the gate off
+    public RLSRegressor(double lambda, double gateSigmas) {
+        this(lambda, gateSigmas, 0);
+    }
+
+    // minResidualStdDev floors the residual standard deviation the gate limit is computed from
+    public RLSRegressor(double lambda, double gateSigmas, double minResidualStdDev) {
+        if (!(lambda > 0 && lambda <= 1)) {
+            throw new IllegalArgumentException("lambda must be in (0, 1], got " + lambda);
+        }
+        if (!(minResidualStdDev >= 0)) {
+            throw new IllegalArgumentException("minResidualStdDev must not be negative, got " + minResidualStdDev);
+        }
+        this.lambda = lambda;
+        this.gateSigmas = gateSigmas;
+        this.minResidualStdDev = minResidualStdDev;
+    }
+
+    public void addData(double value) {
+        sampleCount++;
+        if (sampleCount == 1) {
+            level = value;
+            slope = 0;
+            p00 = INITIAL_COVARIANCE;
+            p01 = 0;
+            p11 = INITIAL_COVARIANCE;
+            return;
+        }
+
+        // advance the frame to x = sampleCount: level += slope, P = F P F'
+        level += slope;
+        p00 += 2 * p01 + p11;
+        p01 += p11;
+
+        double residual = value - level;
+        if (gateSigmas > 0) {
+            double limit = gateSigmas * Math.max(Math.sqrt(residualVariance), minResidualStdDev);
+            boolean reject = sampleCount > GATE_WARMUP && limit > 0 && Math.abs(residual) > limit;
+            double clipped = reject ? limit : residual;
+            double weight = Math.max(1 - lambda, 1.0 / sampleCount);
+            residualVariance += weight * (clipped * clipped - residualVariance);
+            if (reject) {
+                rejectedCount++;
+                return;
+            }
+        }
+
+        // gain k = P h / (lambda + h' P h) with h = (1, 0); P = (P - k h' P) / lambda
+        double denominator = lambda + p00;
+        double k0 = p00 / denominator;
+        double k1 = p01 / denominator;
+        level += k0 * residual;
+        slope += k1 * residual;
+        double q00 = p00;
+        double q01 = p01;
+        p00 = (p00 - k0 * q00) / lambda;
+        p01 = (p01 - k0 * q01) / lambda;
+        p11 = (p11 - k1 * q01) / lambda;
+    }
+
+    // batch version of addData over values[off .. off+len)
+    public void addData(double[] values, int off, int len) {
+        Objects.checkFromIndexSize(off, len, values.length);
+        for (int i = off; i < off + len; i++) {
+            addData(values[i]);
+        }
+    }
+
+    // fitted value at the newest sample
+    public double getLevel() {
+        return level;
+    }
+
+    public double getSlope() {
+        return slope;
+    }
+
+    public long getSampleCount() {
+        return sampleCount;
+    }
+
+    // samples the residual gate kept out of the fit
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    // running standard deviation of the prior residuals (clipped at the gate); 0 without a gate
+    public double getResidualStdDev() {
+        return Math.sqrt(residualVariance);
+    }
+
+    public double[] predict(double... xValues) {
+        double[] model = getParams();
+        double[] predictions = new double[xValues.length];
+        for (int i = 0; i < xValues.length; i++) {
+            predictions[i] = model[0] + model[1] * xValues[i];
+        }
+        return predictions;
+    }
+
+    // the x next samples after the newest, x = sampleCount + 1 ..
+    public double[] next(int x) {
+        checkFitted();
+        double[] predictions = new double[x];
+        for (int i = 0; i < x; i++) {
+            predictions[i] = level + slope * (i + 1);
+        }
+        return predictions;
+    }
+
+    // [intercept, slope] with samples at x = 1, 2, ..., as RANSACRegressor reports them
+    public double[] getParams() {
+        checkFitted();
+        params[0] = level - slope * sampleCount;
+        params[1] = slope;
+        return params;
+    }
+
+    private void checkFitted() {
+        if (sampleCount < 2) {
+            throw new IllegalStateException("At least two data points are needed to fit the model.");
+        }
+    }
+
+    // exponentially weighted least squares over all of y, the batch form of the same estimator
+    private static double[] weightedLeastSquares(double[] y, double lambda) {
+        int n = y.length;
+        double sw = 0;
+        double sx = 0;
+        double sy = 0;
+        double w = 1;
+        for (int t = n; t >= 1; t--, w *= lambda) {
+            sw += w;
+            sx += w * t;
+            sy += w * y[t - 1];
+        }
+        double xMean = sx / sw;
+        double yMean = sy / sw;
+        double sxx = 0;
+        double sxy = 0;
+        w = 1;
+        for (int t = n; t >= 1; t--, w *= lambda) {
+            sxx += w * (t - xMean) * (t - xMean);
+            sxy += w * (t - xMean) * (y[t - 1] - yMean);
+        }
+        double slope = sxy / sxx;
+        return new double[] { yMean - slope * xMean, slope };
+    }
+
+    private static void test() {
+        double lambda = 0.99;
+        Random random = new Random(17);
+        double[] series = new double[20_000];
+        double[] clean = new double[series.length];
+        double drift = 0.02;
+        for (int i = 0; i < series.length; i++) {
+            if (i % 5_000 == 0) {
+                drift = -drift;
+            }
+            clean[i] = (i == 0 ? 5000 : clean[i - 1]) + drift + 0.1 * random.nextGaussian();
+            series[i] = clean[i] + (random.nextDouble() < 0.05 ? 30 * random.nextGaussian() : 0);
+        }
+
+        RLSRegressor plain = new RLSRegressor(lambda);
+        RLSRegressor gated = new RLSRegressor(lambda, 4);
+        long start = System.nanoTime();
+        plain.addData(series, 0, series.length);
+        long plainNanos = System.nanoTime() - start;
+        gated.addData(series, 0, series.length);
+
+        double[] batch = weightedLeastSquares(series, lambda);
+        RLSRegressor onClean = new RLSRegressor(lambda);
+        onClean.addData(clean, 0, clean.length);
+        System.out.println("RLS " + Arrays.toString(plain.getParams()) + " vs batch weighted LS " + Arrays.toString(batch));
+        System.out.println("slope: clean " + onClean.getSlope() + ", ungated " + plain.getSlope() + ", gated "
+                + gated.getSlope() + " (" + gated.getRejectedCount() + " rejected, residual sd "
+                + gated.getResidualStdDev() + ")");
+        System.out.println("next 3 (gated): " + Arrays.toString(gated.next(3)) + ", "
+                + plainNanos / series.length + " ns/sample");
+
+        // flat warm-up, then a ramp: the gate must open up and follow it
+        RLSRegressor afterFlat = new RLSRegressor(lambda, 4);
+        for (int i = 0; i < 200; i++) {
+            afterFlat.addData(i < 20 ? 5000 : 5000 + 0.25 * (i - 19));
+        }
+        System.out.println("flat then 0.25/sample ramp: slope " + afterFlat.getSlope() + ", "
+                + afterFlat.getRejectedCount() + " of 200 rejected");
+    }
+
+    public static void main(String[] args) {
+        test();
+    }
+}
@@ -0,0 +1,211 @@
+package cme_codeup;
+
+// Median of a changing set of values, each stored under a caller-chosen id in [0, capacity).
+// Two indexed heaps split the values: `low` (max-heap) holds the smaller half and `high`
+// (min-heap) the larger, with low holding one extra value when the count is odd. Every id knows
+// its heap position, so add, remove and replace cost O(log n) and median() is O(1).
+// Arrays are sized once; nothing is allocated after construction.
+final class RollingMedian {
+
+    private final double[] value;    // by id
+    private final int[] position;    // by id: index in low, or -(index + 1) in high
+    private final boolean[] present; // by id
+    private final int[] low;
+    private final int[] high;
+    private int lowSize;
+    private int highSize;
+
+    RollingMedian(int capacity) {
+        this.value = new double[capacity];
+        this.position = new int[capacity];
+        this.present = new boolean[capacity];
+        this.low = new int[capacity];
+        this.high = new int[capacity];
+    }
+
+    int size() {
+        return lowSize + highSize;
+    }
+
+    boolean contains(int id) {
+        return present[id];
+    }
+
+    void add(int id, double v) {
+        if (present[id]) {
+            throw new IllegalStateException("id " + id + " is already present");
+        }
+        present[id] = true;
+        value[id] = v;
+        if (lowSize == 0 || v <= value[low[0]]) {
+            low[lowSize] = id;
+            position[id] = lowSize;
+            lowSize++;
+            siftUpLow(lowSize - 1);
+        } else {
+            high[highSize] = id;
+            position[id] = -(highSize + 1);
+            highSize++;
+            siftUpHigh(highSize - 1);
+        }
+        rebalance();
+    }
+
+    void remove(int id) {
+        if (!present[id]) {
+            throw new IllegalStateException("id " + id + " is not present");
+        }
+        present[id] = false;
+        int p = position[id];
+        if (p >= 0) {
+            int last = low[--lowSize];
+            if (p < lowSize) {
+                low[p] = last;
+                position[last] = p;
+                siftUpLow(p);
+                siftDownLow(position[last]);
+            }
+        } else {
+            p = -p - 1;
+            int last = high[--highSize];
+            if (p < highSize) {
+                high[p] = last;
+                position[last] = -(p + 1);
+                siftUpHigh(p);
+                siftDownHigh(-position[last] - 1);
+            }
+        }
+        rebalance();
+    }
+
+    void replace(int id, double v) {
+        remove(id);
+        add(id, v);
+    }
+
+    // middle value, or the mean of the two middle values for an even count; NaN when empty
+    double median() {
+        if (lowSize == 0) {
+            return Double.NaN;
+        }
+        if (lowSize > highSize) {
+            return value[low[0]];
+        }
+        return (value[low[0]] + value[high[0]]) / 2;
+    }
+
+    void clear() {
+        for (int i = 0; i < lowSize; i++) {
+            present[low[i]] = false;
+        }
+        for (int i = 0; i < highSize; i++) {
+            present[high[i]] = false;
+        }
+        lowSize = 0;
+        highSize = 0;
+    }
+
+    private void rebalance() {
+        if (lowSize > highSize + 1) {
+            int id = low[0];
+            int last = low[--lowSize];
+            if (lowSize > 0) {
+                low[0] = last;
+                position[last] = 0;
+                siftDownLow(0);
+            }
+            high[highSize] = id;
+            position[id] = -(highSize + 1);
+            highSize++;
+            siftUpHigh(highSize - 1);
+        } else if (highSize > lowSize) {
+            int id = high[0];
+            int last = high[--highSize];
+            if (highSize > 0) {
+                high[0] = last;
+                position[last] = -1;
+                siftDownHigh(0);
+            }
+            low[lowSize] = id;
+            position[id] = lowSize;
+            lowSize++;
+            siftUpLow(lowSize - 1);
+        }
+    }
+
+    private void siftUpLow(int i) {
+        int id = low[i];
+        double v = value[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (value[low[parent]] >= v) {
+                break;
+            }
+            low[i] = low[parent];
+            position[low[i]] = i;
+            i = parent;
+        }
+        low[i] = id;
+        position[id] = i;
+    }
+
+    private void siftDownLow(int i) {
+        int id = low[i];
+        double v = value[id];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= lowSize) {
+                break;
+            }
+            if (child + 1 < lowSize && value[low[child + 1]] > value[low[child]]) {
+                child++;
+            }
+            if (value[low[child]] <= v) {
+                break;
+            }
+            low[i] = low[child];
+            position[low[i]] = i;
+            i = child;
+        }
+        low[i] = id;
+        position[id] = i;
+    }
+
+    private void siftUpHigh(int i) {
+        int id = high[i];
+        double v = value[id];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (value[high[parent]] <= v) {
+                break;
+            }
+            high[i] = high[parent];
+            position[high[i]] = -(i + 1);
+            i = parent;
+        }
+        high[i] = id;
+        position[id] = -(i + 1);
+    }
+
+    private void siftDownHigh(int i) {
+        int id = high[i];
+        double v = value[id];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= highSize) {
+                break;
+            }
+            if (child + 1 < highSize && value[high[child + 1]] < value[high[child]]) {
+                child++;
+            }
+            if (value[high[child]] >= v) {
+                break;
+            }
+            high[i] = high[child];
+            position[high[i]] = -(i + 1);
+            i = child;
+        }
+        high[i] = id;
+        position[id] = -(i + 1);
+    }
+}
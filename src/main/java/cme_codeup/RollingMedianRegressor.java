@@ -0,0 +1,203 @@
+package cme_codeup;
+
+import java.util.Arrays;
+import java.util.Random;
+
+// Deterministic robust line over a sliding window, with the append/fit/predict/next surface of
+// RANSACRegressor. The slope is the median of the lag-h slopes (y[i + h] - y[i]) / h over the
+// window, with h = windowSize / 2 (a Theil-Sen estimator restricted to pairs h apart), and the
+// intercept puts the line through the median of y at the window centre. With points at x = 1..n
+// this tolerates up to a quarter of the window being outliers.
+//
+// Both medians are kept in RollingMedian structures keyed by ring-buffer slot, so an append costs
+// O(log n), fit() is O(1), and the same data always gives the same line: no sampling, no trial
+// count, no seed. getMAD() scores the window against the line on demand, in O(n log n).
+public class RollingMedianRegressor {
+
+    private final int windowSize;
+    private final int lag;
+
+    // Sliding window as a primitive ring buffer; window[head] is the oldest point (x = 1)
+    private final double[] window;
+    private int head;
+    private int count;
+
+    // lag-h slope of the pair starting at each slot, and y by slot
+    private final RollingMedian slopes;
+    private final RollingMedian levels;
+
+    private final double[] bestModel = new double[2];
+    private boolean fitted;
+    private int lastFitLength;
+    private final double[] residualScratch;
+
+    public RollingMedianRegressor(int windowSize) {
+        if (windowSize < 2) {
+            throw new IllegalArgumentException("At least two data points are needed to fit the model.");
+        }
+        this.windowSize = windowSize;
+        this.lag = windowSize / 2;
+        this.window = new double[windowSize];
+        this.slopes = new RollingMedian(windowSize);
+        this.levels = new RollingMedian(windowSize);
+        this.residualScratch = new double[windowSize];
+    }
+
+    // O(log n): once the window is full the oldest point and the pair starting at it are dropped
+    public void append(double value) {
+        int slot;
+        if (count < windowSize) {
+            slot = (head + count) % windowSize;
+            count++;
+        } else {
+            slot = head;
+            head = (head + 1) % windowSize;
+            levels.remove(slot);
+            if (slopes.contains(slot)) {
+                slopes.remove(slot);
+            }
+        }
+        window[slot] = value;
+        levels.add(slot, value);
+        if (count > lag) {
+            int start = (slot - lag + windowSize) % windowSize;
+            slopes.add(start, (value - window[start]) / lag);
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    // lag h between the points of each slope pair
+    public int getLag() {
+        return lag;
+    }
+
+    // O(1): reads the two medians
+    public void fit() {
+        if (count <= lag) {
+            throw new IllegalStateException("At least " + (lag + 1) + " data points are needed to fit the model.");
+        }
+        double slope = slopes.median();
+        bestModel[0] = levels.median() - slope * (count + 1) / 2.0;
+        bestModel[1] = slope;
+        fitted = true;
+        lastFitLength = count;
+    }
+
+    public double[] predict(double... xValues) {
+        double[] model = getParams();
+        double[] predictions = new double[xValues.length];
+        for (int i = 0; i < xValues.length; i++) {
+            predictions[i] = model[0] + model[1] * xValues[i];
+        }
+        return predictions;
+    }
+
+    public double[] next(int x) {
+        double[] model = getParams();
+        double[] predictions = new double[x];
+        for (int i = 0; i < x; i++) {
+            predictions[i] = model[0] + model[1] * (lastFitLength + i + 1);
+        }
+        return predictions;
+    }
+
+    // [intercept, slope] of the last fit
+    public double[] getParams() {
+        if (!fitted) {
+            throw new IllegalStateException("Model has not been fitted.");
+        }
+        return bestModel;
+    }
+
+    // Median absolute residual of the current window against the last fit. Multiply by 1.4826 for
+    // a standard-deviation estimate under Gaussian noise, e.g. as a residual threshold.
+    public double getMAD() {
+        double[] model = getParams();
+        for (int i = 0; i < count; i++) {
+            residualScratch[i] = Math.abs(window[(head + i) % windowSize] - (model[0] + model[1] * (i + 1)));
+        }
+        Arrays.sort(residualScratch, 0, count);
+        int mid = count >>> 1;
+        return (count & 1) == 1 ? residualScratch[mid] : (residualScratch[mid - 1] + residualScratch[mid]) / 2;
+    }
+
+    private static void testMedian() {
+        int capacity = 101;
+        RollingMedian median = new RollingMedian(capacity);
+        double[] values = new double[capacity];
+        Random random = new Random(8);
+        int mismatches = 0;
+        for (int step = 0; step < 100_000; step++) {
+            int id = random.nextInt(capacity);
+            if (median.contains(id) && random.nextBoolean()) {
+                median.remove(id);
+            } else {
+                // coarse values so ties are common
+                values[id] = random.nextInt(20);
+                if (median.contains(id)) {
+                    median.replace(id, values[id]);
+                } else {
+                    median.add(id, values[id]);
+                }
+            }
+            double[] sorted = new double[median.size()];
+            for (int i = 0, k = 0; i < capacity; i++) {
+                if (median.contains(i)) {
+                    sorted[k++] = values[i];
+                }
+            }
+            Arrays.sort(sorted);
+            int n = sorted.length;
+            double expected = n == 0 ? Double.NaN
+                    : (n & 1) == 1 ? sorted[n / 2] : (sorted[n / 2 - 1] + sorted[n / 2]) / 2;
+            if (Double.compare(expected, median.median()) != 0) {
+                mismatches++;
+            }
+        }
+        System.out.println("RollingMedian mismatches against sort: " + mismatches);
+    }
+
+    private static void test() {
+        int windowSize = 200;
+        RollingMedianRegressor robust = new RollingMedianRegressor(windowSize);
+        RollingMedianRegressor replay = new RollingMedianRegressor(windowSize);
+        Random random = new Random(13);
+        double trueSlope = 0.05;
+        double[] series = new double[100_000];
+        for (int i = 0; i < series.length; i++) {
+            double outlier = random.nextDouble() < 0.15 ? 25 * random.nextGaussian() : 0;
+            series[i] = 5000 + trueSlope * i + random.nextGaussian() + outlier;
+        }
+        double maxSlopeError = 0;
+        LatencyHistogram latency = new LatencyHistogram("append+fit");
+        for (int i = 0; i < series.length; i++) {
+            long start = System.nanoTime();
+            robust.append(series[i]);
+            if (robust.size() == windowSize) {
+                robust.fit();
+            }
+            if (i > 10_000) {
+                latency.record(System.nanoTime() - start);
+            }
+            replay.append(series[i]);
+            if (robust.size() == windowSize) {
+                maxSlopeError = Math.max(maxSlopeError, Math.abs(robust.getParams()[1] - trueSlope));
+            }
+        }
+        replay.fit();
+        System.out.println("slope " + robust.getParams()[1] + " (true " + trueSlope + "), max slope error "
+                + maxSlopeError + ", MAD " + robust.getMAD() + ", replay identical "
+                + Arrays.equals(robust.getParams(), replay.getParams()));
+        System.out.println("append + fit: p50 " + latency.getValueAtPercentile(50) + " ns, p99 "
+                + latency.getValueAtPercentile(99) + " ns, p99.9 " + latency.getValueAtPercentile(99.9) + " ns");
+        System.out.println("next 3: " + Arrays.toString(robust.next(3)));
+    }
+
+    public static void main(String[] args) {
+        testMedian();
+        test();
+    }
+}
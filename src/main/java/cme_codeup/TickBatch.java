@@ -0,0 +1,35 @@
+package cme_codeup;
+
+// One Flow item of the indicator pipeline: up to maxBatch (instrument, price) ticks delivered for a
+// single request. Batches from a ConflatingTickPublisher hold each instrument at most once, with
+// the latest price it had when the batch was cut. A batch is not modified after it is published,
+// so stages may pass it on downstream as is.
+public final class TickBatch {
+
+    private final int[] instruments;
+    private final double[] prices;
+    private final int size;
+
+    TickBatch(int[] instruments, double[] prices, int size) {
+        this.instruments = instruments;
+        this.prices = prices;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int instrument(int i) {
+        return instruments[i];
+    }
+
+    public double price(int i) {
+        return prices[i];
+    }
+
+    // backing array, for handing price i to a TickSink as prices[i .. i+1)
+    double[] prices() {
+        return prices;
+    }
+}
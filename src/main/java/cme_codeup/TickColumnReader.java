@@ -0,0 +1,213 @@
+package cme_codeup;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Reads files written by TickColumnWriter one chunk at a time. The file is memory-mapped in
+// segments of whole chunks and the column accessors are views over the mapping, so nothing is
+// parsed or decoded except delta timestamps. Views are only valid until the next call to next().
+//
+//   try (TickColumnReader reader = new TickColumnReader(path)) {
+//       while (reader.next()) {
+//           int n = reader.prices(batch);        // bulk copy into a double[]
+//           ema.addData(batch, 0, n, null);
+//       }
+//   }
+public class TickColumnReader implements Closeable {
+
+    private static final long SEGMENT_SIZE = 256L << 20;
+
+    private final FileChannel channel;
+    private final long size;
+
+    private MappedByteBuffer segment;
+    private long segmentStart;
+    private long nextChunk = TickColumnWriter.FILE_HEADER_BYTES;
+
+    // current chunk, as offsets into segment
+    private int count;
+    private int flags;
+    private long baseTimestamp;
+    private int instrumentOffset;
+    private int timestampOffset;
+    private int priceOffset;
+
+    private double[] batch = new double[0];
+
+    public TickColumnReader(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.READ);
+        this.size = channel.size();
+        if (size < TickColumnWriter.FILE_HEADER_BYTES) {
+            channel.close();
+            throw new IOException("Not a tick column file: " + path);
+        }
+        map(0, TickColumnWriter.FILE_HEADER_BYTES);
+        if (segment.getInt(0) != TickColumnWriter.MAGIC || segment.getInt(4) != TickColumnWriter.VERSION) {
+            channel.close();
+            throw new IOException("Not a tick column file or unsupported version: " + path);
+        }
+    }
+
+    // Advances to the next chunk; false at the end of the file
+    public boolean next() throws IOException {
+        if (nextChunk >= size) {
+            count = 0;
+            return false;
+        }
+        map(nextChunk, TickColumnWriter.CHUNK_HEADER_BYTES);
+        int at = (int) (nextChunk - segmentStart);
+        int n = segment.getInt(at);
+        if (n < 1 || n > TickColumnWriter.MAX_CHUNK_SIZE) {
+            throw new IOException("Corrupt chunk header at offset " + nextChunk);
+        }
+        boolean delta = (segment.getInt(at + 4) & TickColumnWriter.FLAG_DELTA) != 0;
+        int bytes = TickColumnWriter.chunkBytes(n, delta);
+        if (nextChunk + bytes > size) {
+            throw new IOException("Truncated chunk at offset " + nextChunk);
+        }
+        map(nextChunk, bytes);
+        at = (int) (nextChunk - segmentStart);
+        count = n;
+        flags = segment.getInt(at + 4);
+        baseTimestamp = segment.getLong(at + 8);
+        instrumentOffset = at + TickColumnWriter.CHUNK_HEADER_BYTES;
+        timestampOffset = instrumentOffset + TickColumnWriter.align8(4 * n);
+        priceOffset = timestampOffset + (delta ? TickColumnWriter.align8(4 * n) : 8 * n);
+        nextChunk += bytes;
+        return true;
+    }
+
+    // makes [pos, pos + len) addressable in segment, remapping at pos when it is not
+    private void map(long pos, int len) throws IOException {
+        if (segment != null && pos >= segmentStart && pos + len <= segmentStart + segment.capacity()) {
+            return;
+        }
+        long mapLen = Math.max(len, Math.min(SEGMENT_SIZE, size - pos));
+        segment = channel.map(FileChannel.MapMode.READ_ONLY, pos, mapLen);
+        segment.order(ByteOrder.LITTLE_ENDIAN);
+        segmentStart = pos;
+    }
+
+    // ticks in the current chunk
+    public int size() {
+        return count;
+    }
+
+    public boolean isDeltaEncoded() {
+        return (flags & TickColumnWriter.FLAG_DELTA) != 0;
+    }
+
+    // Zero-copy view of the instrument column of the current chunk
+    public IntBuffer instruments() {
+        return column(instrumentOffset, 4 * count).asIntBuffer();
+    }
+
+    // Zero-copy view of the price column of the current chunk
+    public DoubleBuffer prices() {
+        return column(priceOffset, 8 * count).asDoubleBuffer();
+    }
+
+    // Bulk copy of the price column into dst[0 .. size()), returns size()
+    public int prices(double[] dst) {
+        prices().get(dst, 0, count);
+        return count;
+    }
+
+    public int instrument(int i) {
+        return segment.getInt(instrumentOffset + 4 * i);
+    }
+
+    public double price(int i) {
+        return segment.getDouble(priceOffset + 8 * i);
+    }
+
+    // Absolute timestamps of the current chunk into dst[0 .. size()), decoding deltas if needed
+    public int timestamps(long[] dst) {
+        if (isDeltaEncoded()) {
+            long t = baseTimestamp;
+            for (int i = 0; i < count; i++) {
+                t += segment.getInt(timestampOffset + 4 * i);
+                dst[i] = t;
+            }
+        } else {
+            column(timestampOffset, 8 * count).asLongBuffer().get(dst, 0, count);
+        }
+        return count;
+    }
+
+    private ByteBuffer column(int offset, int bytes) {
+        return segment.slice(offset, bytes).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    // Streams the prices of every remaining chunk into sink, one batch per chunk
+    public long replay(TickSink sink) throws IOException {
+        long ticks = 0;
+        while (next()) {
+            double[] prices = batch();
+            prices(prices);
+            sink.onTicks(prices, 0, count);
+            ticks += count;
+        }
+        return ticks;
+    }
+
+    // Streams the prices of one instrument from every remaining chunk into sink
+    public long replay(int instrument, TickSink sink) throws IOException {
+        long ticks = 0;
+        while (next()) {
+            double[] prices = batch();
+            int n = 0;
+            for (int i = 0; i < count; i++) {
+                if (instrument(i) == instrument) {
+                    prices[n++] = price(i);
+                }
+            }
+            if (n > 0) {
+                sink.onTicks(prices, 0, n);
+                ticks += n;
+            }
+        }
+        return ticks;
+    }
+
+    private double[] batch() {
+        if (batch.length < count) {
+            batch = new double[count];
+        }
+        return batch;
+    }
+
+    @Override
+    public void close() throws IOException {
+        segment = null;
+        channel.close();
+    }
+
+    // usage: TickColumnReader <file.ticks> [instrument]
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("usage: TickColumnReader <file.ticks> [instrument]");
+            return;
+        }
+        EMA ema = new EMA(20);
+        RANSACRegressor ransac = new RANSACRegressor(0.99, 200);
+        TickSink sink = TickSink.all(TickSink.of(ema), TickSink.of(ransac));
+        long start = System.nanoTime();
+        long ticks;
+        try (TickColumnReader reader = new TickColumnReader(Paths.get(args[0]))) {
+            ticks = args.length > 1 ? reader.replay(Integer.parseInt(args[1]), sink) : reader.replay(sink);
+        }
+        long nanos = System.nanoTime() - start;
+        System.out.println(ticks + " ticks in " + nanos / 1_000_000 + " ms ("
+                + Math.round(ticks * 1e9 / Math.max(1, nanos)) + " ticks/s), EMA " + ema.getMean());
+    }
+}
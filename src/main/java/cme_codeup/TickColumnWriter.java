@@ -0,0 +1,202 @@
+package cme_codeup;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+// Writes ticks in the columnar format read by TickColumnReader. All values are little-endian.
+//   file header : int MAGIC, int VERSION
+//   chunk       : int count, int flags, long baseTimestamp, then the columns, each padded to 8 bytes
+//                   int[count]    instrument id
+//                   int[count]    timestamp delta from the previous tick (FLAG_DELTA), or
+//                   long[count]   absolute timestamp
+//                   double[count] price
+// Every column starts 8-byte aligned, so the reader can hand out IntBuffer/DoubleBuffer views of
+// the mapped file and bulk-copy prices without decoding anything.
+public class TickColumnWriter implements Closeable {
+
+    static final int MAGIC = 0x434D4554; // "CMET"
+    static final int VERSION = 1;
+    static final int FILE_HEADER_BYTES = 8;
+    static final int CHUNK_HEADER_BYTES = 16;
+    static final int FLAG_DELTA = 1;
+
+    // upper bound on ticks per chunk, keeps a chunk well inside one mapped segment of the reader
+    static final int MAX_CHUNK_SIZE = 1 << 20;
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final boolean deltaTimestamps;
+    private final int[] instruments;
+    private final long[] timestamps;
+    private final double[] prices;
+    private final ByteBuffer buf;
+    private int count;
+    private long ticks;
+
+    public TickColumnWriter(Path path) throws IOException {
+        this(path, DEFAULT_CHUNK_SIZE, true);
+    }
+
+    // deltaTimestamps stores timestamps as int deltas; a chunk whose deltas do not fit in an int
+    // is written with absolute timestamps instead
+    public TickColumnWriter(Path path, int chunkSize, boolean deltaTimestamps) throws IOException {
+        if (chunkSize < 1 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("chunkSize must be in [1, " + MAX_CHUNK_SIZE + "]");
+        }
+        this.deltaTimestamps = deltaTimestamps;
+        this.instruments = new int[chunkSize];
+        this.timestamps = new long[chunkSize];
+        this.prices = new double[chunkSize];
+        this.buf = ByteBuffer.allocateDirect(chunkBytes(chunkSize, false)).order(ByteOrder.LITTLE_ENDIAN);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buf.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully();
+    }
+
+    // bytes of one chunk holding count ticks, header included
+    static int chunkBytes(int count, boolean delta) {
+        return CHUNK_HEADER_BYTES + align8(4 * count) + (delta ? align8(4 * count) : 8 * count) + 8 * count;
+    }
+
+    static int align8(int bytes) {
+        return (bytes + 7) & ~7;
+    }
+
+    public void write(int instrument, long timestamp, double price) throws IOException {
+        instruments[count] = instrument;
+        timestamps[count] = timestamp;
+        prices[count] = price;
+        if (++count == prices.length) {
+            flushChunk();
+        }
+    }
+
+    public long getTicks() {
+        return ticks + count;
+    }
+
+    private void flushChunk() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        boolean delta = deltaTimestamps && deltasFitInt();
+        buf.clear();
+        buf.putInt(count).putInt(delta ? FLAG_DELTA : 0).putLong(timestamps[0]);
+        for (int i = 0; i < count; i++) {
+            buf.putInt(instruments[i]);
+        }
+        pad();
+        if (delta) {
+            long prev = timestamps[0];
+            for (int i = 0; i < count; i++) {
+                buf.putInt((int) (timestamps[i] - prev));
+                prev = timestamps[i];
+            }
+            pad();
+        } else {
+            for (int i = 0; i < count; i++) {
+                buf.putLong(timestamps[i]);
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            buf.putDouble(prices[i]);
+        }
+        buf.flip();
+        writeFully();
+        ticks += count;
+        count = 0;
+    }
+
+    private boolean deltasFitInt() {
+        for (int i = 1; i < count; i++) {
+            long d = timestamps[i] - timestamps[i - 1];
+            if (d != (int) d) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void pad() {
+        while ((buf.position() & 7) != 0) {
+            buf.put((byte) 0);
+        }
+    }
+
+    private void writeFully() throws IOException {
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushChunk();
+        } finally {
+            channel.close();
+        }
+    }
+
+    // One-off conversion of a CSV export. Instrument fields that are not integers (symbols) are
+    // numbered in order of first appearance; lines whose timestamp or price does not parse
+    // (headers) are skipped. Returns the number of ticks written.
+    public static long convertCsv(Path csv, Path out, int instrumentColumn, int timestampColumn, int priceColumn)
+            throws IOException {
+        Map<String, Integer> symbols = new HashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(csv, StandardCharsets.US_ASCII);
+             TickColumnWriter writer = new TickColumnWriter(out)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                int needed = Math.max(instrumentColumn, Math.max(timestampColumn, priceColumn));
+                if (fields.length <= needed) {
+                    continue;
+                }
+                long timestamp;
+                double price;
+                try {
+                    timestamp = Long.parseLong(fields[timestampColumn].trim());
+                    price = Double.parseDouble(fields[priceColumn].trim());
+                } catch (NumberFormatException e) {
+                    continue;
+                }
+                String symbol = fields[instrumentColumn].trim();
+                int instrument;
+                try {
+                    instrument = Integer.parseInt(symbol);
+                } catch (NumberFormatException e) {
+                    instrument = symbols.computeIfAbsent(symbol, s -> symbols.size());
+                }
+                writer.write(instrument, timestamp, price);
+            }
+            return writer.getTicks();
+        }
+    }
+
+    // usage: TickColumnWriter <in.csv> <out.ticks> [instrumentColumn timestampColumn priceColumn]
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: TickColumnWriter <in.csv> <out.ticks> [instrumentColumn timestampColumn priceColumn]");
+            return;
+        }
+        int instrumentColumn = args.length > 4 ? Integer.parseInt(args[2]) : 0;
+        int timestampColumn = args.length > 4 ? Integer.parseInt(args[3]) : 1;
+        int priceColumn = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+        long start = System.nanoTime();
+        long ticks = convertCsv(Paths.get(args[0]), Paths.get(args[1]), instrumentColumn, timestampColumn, priceColumn);
+        System.out.println("converted " + ticks + " ticks in " + (System.nanoTime() - start) / 1_000_000 + " ms");
+    }
+}
@@ -0,0 +1,279 @@
+package cme_codeup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+// Replays a historical tick file into TickSinks. The file is memory-mapped in segments with
+// FileChannel.map and prices are parsed straight from the mapped bytes, without Strings or a
+// Reader, into a reused batch array.
+//   CSV:    one tick per line, the price in column priceColumn (0-based); lines whose price field
+//           is not a number (headers) are skipped
+//   BINARY: little-endian IEEE 754 doubles, one price per 8 bytes
+public class TickFileReplay {
+
+    public enum Format {
+        CSV,
+        BINARY
+    }
+
+    // mapped window size; a CSV line may not be longer than this
+    private static final long SEGMENT_SIZE = 256L << 20;
+    private static final int BATCH_SIZE = 4096;
+
+    // exact powers of ten for the fast decimal path
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final Path path;
+    private final Format format;
+    private final int priceColumn;
+    private byte delimiter = ',';
+
+    private final double[] batch = new double[BATCH_SIZE];
+    private int batchLen;
+
+    public TickFileReplay(Path path, Format format) {
+        this(path, format, 0);
+    }
+
+    public TickFileReplay(Path path, Format format, int priceColumn) {
+        this.path = path;
+        this.format = format;
+        this.priceColumn = priceColumn;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = (byte) delimiter;
+    }
+
+    // Streams every tick into sink and returns how many ticks were replayed and how long it took
+    public ReplayStats replay(TickSink sink) throws IOException {
+        long start = System.nanoTime();
+        long ticks;
+        long bytes;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            bytes = channel.size();
+            ticks = format == Format.CSV ? replayCsv(channel, bytes, sink) : replayBinary(channel, bytes, sink);
+        }
+        return new ReplayStats(ticks, bytes, System.nanoTime() - start);
+    }
+
+    private long replayBinary(FileChannel channel, long size, TickSink sink) throws IOException {
+        long ticks = 0;
+        long segment = SEGMENT_SIZE - SEGMENT_SIZE % Double.BYTES;
+        for (long pos = 0; pos + Double.BYTES <= size; pos += segment) {
+            long len = Math.min(segment, size - pos);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            int n = (int) (len / Double.BYTES);
+            for (int i = 0; i < n; i++) {
+                push(buf.getDouble(i * Double.BYTES), sink);
+            }
+            ticks += n;
+        }
+        flush(sink);
+        return ticks;
+    }
+
+    private long replayCsv(FileChannel channel, long size, TickSink sink) throws IOException {
+        long ticks = 0;
+        long pos = 0;
+        while (pos < size) {
+            long len = Math.min(SEGMENT_SIZE, size - pos);
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            int limit = (int) len;
+            // stop at the last complete line unless this is the end of the file
+            if (pos + len < size) {
+                while (limit > 0 && buf.get(limit - 1) != '\n') {
+                    limit--;
+                }
+                if (limit == 0) {
+                    throw new IOException("CSV line longer than " + SEGMENT_SIZE + " bytes at offset " + pos);
+                }
+            }
+            int lineStart = 0;
+            while (lineStart < limit) {
+                int lineEnd = lineStart;
+                while (lineEnd < limit && buf.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                double price = parsePrice(buf, lineStart, lineEnd);
+                if (!Double.isNaN(price)) {
+                    push(price, sink);
+                    ticks++;
+                }
+                lineStart = lineEnd + 1;
+            }
+            pos += limit;
+        }
+        flush(sink);
+        return ticks;
+    }
+
+    // price field of the line [start, end), or NaN when the line has no numeric price there
+    private double parsePrice(MappedByteBuffer buf, int start, int end) {
+        int field = start;
+        for (int column = 0; column < priceColumn; column++) {
+            while (field < end && buf.get(field) != delimiter) {
+                field++;
+            }
+            if (field == end) {
+                return Double.NaN;
+            }
+            field++;
+        }
+        int fieldEnd = field;
+        while (fieldEnd < end && buf.get(fieldEnd) != delimiter) {
+            fieldEnd++;
+        }
+        return parseDecimal(buf, field, fieldEnd);
+    }
+
+    // Parses [-+]digits[.digits] with surrounding blanks or quotes. Mantissas below 2^53 with at most
+    // 22 fractional digits are converted exactly (one correctly rounded divide); anything else,
+    // including exponent notation, goes through Double.parseDouble.
+    static double parseDecimal(ByteBuffer buf, int start, int end) {
+        while (start < end && isBlank(buf.get(start))) {
+            start++;
+        }
+        while (end > start && isBlank(buf.get(end - 1))) {
+            end--;
+        }
+        int i = start;
+        boolean negative = false;
+        if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            negative = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int scale = 0;
+        boolean dot = false;
+        boolean sawDigit = false;
+        for (; i < end; i++) {
+            byte c = buf.get(i);
+            if (c >= '0' && c <= '9') {
+                if (mantissa >= (1L << 53) / 10) {
+                    return slowParse(buf, start, end);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                sawDigit = true;
+                if (dot) {
+                    scale++;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else if (c == 'e' || c == 'E') {
+                return slowParse(buf, start, end);
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (!sawDigit) {
+            return Double.NaN;
+        }
+        if (scale >= POW10.length) {
+            return slowParse(buf, start, end);
+        }
+        double value = mantissa / POW10[scale];
+        return negative ? -value : value;
+    }
+
+    private static double slowParse(ByteBuffer buf, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buf.get(start + i);
+        }
+        try {
+            return Double.parseDouble(new String(bytes, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static boolean isBlank(byte c) {
+        return c == ' ' || c == '\t' || c == '\r' || c == '"';
+    }
+
+    private void push(double price, TickSink sink) {
+        batch[batchLen++] = price;
+        if (batchLen == BATCH_SIZE) {
+            flush(sink);
+        }
+    }
+
+    private void flush(TickSink sink) {
+        if (batchLen > 0) {
+            sink.onTicks(batch, 0, batchLen);
+            batchLen = 0;
+        }
+    }
+
+    public static final class ReplayStats {
+        private final long ticks;
+        private final long bytes;
+        private final long nanos;
+
+        ReplayStats(long ticks, long bytes, long nanos) {
+            this.ticks = ticks;
+            this.bytes = bytes;
+            this.nanos = nanos;
+        }
+
+        public long getTicks() {
+            return ticks;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public long getNanos() {
+            return nanos;
+        }
+
+        public double ticksPerSecond() {
+            return nanos == 0 ? 0 : ticks * 1e9 / nanos;
+        }
+
+        @Override
+        public String toString() {
+            return ticks + " ticks, " + bytes + " bytes in " + nanos / 1_000_000 + " ms ("
+                    + Math.round(ticksPerSecond()) + " ticks/s)";
+        }
+    }
+
+    // usage: TickFileReplay <file> [csv|binary] [priceColumn]
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.out.println("usage: TickFileReplay <file> [csv|binary] [priceColumn]");
+            return;
+        }
+        Format format = args.length > 1 ? Format.valueOf(args[1].toUpperCase()) : Format.CSV;
+        int column = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        TickFileReplay replay = new TickFileReplay(Paths.get(args[0]), format, column);
+
+        EMA ema = new EMA(20);
+        DEMA dema = new DEMA(20);
+        EMATrend emaTrend = new EMATrend(50, 10);
+        DEMATrend demaTrend = new DEMATrend(50, 10);
+        RANSACRegressor ransac = new RANSACRegressor(0.99, 200);
+        ReplayStats stats = replay.replay(TickSink.all(TickSink.of(ema), TickSink.of(dema),
+                TickSink.of(emaTrend), TickSink.of(demaTrend), TickSink.of(ransac)));
+        System.out.println(stats);
+        System.out.println("EMA " + ema.getMean() + ", DEMA " + dema.getMean()
+                + ", EMATrend " + emaTrend.getTrendRatio() + ", DEMATrend " + demaTrend.getTrendRatio());
+    }
+}
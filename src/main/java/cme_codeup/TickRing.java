@@ -0,0 +1,92 @@
+package cme_codeup;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+// Bounded single-producer/single-consumer queue of (instrument, price) ticks in two primitive
+// arrays, so nothing is boxed or allocated per tick. The producer publishes a slot by a release
+// store of tail, the consumer frees it by a release store of head. Both counters live in one
+// long[] far enough apart that they do not share a cache line, and each side caches the other
+// side's counter so it only reads it when the ring looks full (producer) or empty (consumer).
+// Each side's counter and cache share a line that only that side writes.
+final class TickRing {
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    // consumer line, 128 bytes past the array header (clear of adjacent-line prefetch): head and its
+    // cached tail; producer line, another 128 bytes on: tail and its cached head. The 128 bytes after
+    // the producer line keep it clear of whatever is allocated next.
+    private static final int HEAD = 16;
+    private static final int TAIL_CACHE = 17;
+    private static final int TAIL = 32;
+    private static final int HEAD_CACHE = 33;
+
+    interface Handler {
+        void onTick(int instrument, double price);
+    }
+
+    private final int capacity;
+    private final int mask;
+    private final int[] instruments;
+    private final double[] prices;
+    private final long[] counters = new long[TAIL + 16];
+
+    // capacity is rounded up to a power of two
+    TickRing(int capacity) {
+        if (capacity < 1 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be in [1, 2^30]");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.instruments = new int[size];
+        this.prices = new double[size];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    // producer only; false when the ring is full
+    boolean offer(int instrument, double price) {
+        long tail = (long) LONGS.getOpaque(counters, TAIL);
+        if (tail - counters[HEAD_CACHE] >= capacity) {
+            counters[HEAD_CACHE] = (long) LONGS.getAcquire(counters, HEAD);
+            if (tail - counters[HEAD_CACHE] >= capacity) {
+                return false;
+            }
+        }
+        int slot = (int) tail & mask;
+        instruments[slot] = instrument;
+        prices[slot] = price;
+        LONGS.setRelease(counters, TAIL, tail + 1);
+        return true;
+    }
+
+    // consumer only; hands up to limit queued ticks to handler and returns how many it handled
+    int drain(Handler handler, int limit) {
+        long head = (long) LONGS.getOpaque(counters, HEAD);
+        long tail = counters[TAIL_CACHE];
+        if (head == tail) {
+            tail = (long) LONGS.getAcquire(counters, TAIL);
+            counters[TAIL_CACHE] = tail;
+            if (head == tail) {
+                return 0;
+            }
+        }
+        int n = (int) Math.min(limit, tail - head);
+        for (int i = 0; i < n; i++) {
+            int slot = (int) (head + i) & mask;
+            handler.onTick(instruments[slot], prices[slot]);
+        }
+        LONGS.setRelease(counters, HEAD, head + n);
+        return n;
+    }
+
+    // approximate, for monitoring from any thread
+    int size() {
+        return (int) ((long) LONGS.getAcquire(counters, TAIL) - (long) LONGS.getAcquire(counters, HEAD));
+    }
+}
@@ -0,0 +1,43 @@
+package cme_codeup;
+
+// Receives parsed prices in batches. The array is reused by the producer, so sinks must consume
+// prices[off .. off+len) before returning.
+@FunctionalInterface
+public interface TickSink {
+
+    void onTicks(double[] prices, int off, int len);
+
+    static TickSink of(EMA ema) {
+        return (prices, off, len) -> ema.addData(prices, off, len, null);
+    }
+
+    static TickSink of(DEMA dema) {
+        return (prices, off, len) -> dema.addData(prices, off, len, null);
+    }
+
+    static TickSink of(EMATrend trend) {
+        return (prices, off, len) -> trend.addData(prices, off, len, null);
+    }
+
+    static TickSink of(DEMATrend trend) {
+        return (prices, off, len) -> trend.addData(prices, off, len, null);
+    }
+
+    static TickSink of(RANSACRegressor regressor) {
+        return (prices, off, len) -> {
+            for (int i = off; i < off + len; i++) {
+                regressor.append(prices[i]);
+            }
+        };
+    }
+
+    // fans every batch out to each sink in order
+    static TickSink all(TickSink... sinks) {
+        TickSink[] copy = sinks.clone();
+        return (prices, off, len) -> {
+            for (TickSink sink : copy) {
+                sink.onTicks(prices, off, len);
+            }
+        };
+    }
+}
@@ -0,0 +1,25 @@
+package cme_codeup;
+
+// DEMA over irregularly spaced ticks: 2 * e1 - e2 where e1 is a TimeDecayEMA of the prices and
+// e2 a TimeDecayEMA of e1, both with the same time constant.
+public class TimeDecayDEMA {
+
+    private final TimeDecayEMA ema;
+    private final TimeDecayEMA emaOfEma;
+    private double currentDEMA;
+
+    public TimeDecayDEMA(long tauNanos) {
+        this.ema = new TimeDecayEMA(tauNanos);
+        this.emaOfEma = new TimeDecayEMA(tauNanos);
+    }
+
+    public void addData(long timestampNanos, double price) {
+        ema.addData(timestampNanos, price);
+        emaOfEma.addData(timestampNanos, ema.getMean());
+        currentDEMA = 2 * ema.getMean() - emaOfEma.getMean();
+    }
+
+    public double getMean() {
+        return currentDEMA;
+    }
+}
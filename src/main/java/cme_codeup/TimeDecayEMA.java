@@ -0,0 +1,73 @@
+package cme_codeup;
+
+// EMA over irregularly spaced ticks: the weight of the past decays with elapsed time rather than
+// with the number of samples, decay = exp(-dt / tau). Each price is held until the next tick
+// (step interpolation), so after an interval dt
+//   mean = decay * mean + (1 - decay) * lastPrice
+// A burst of ticks with the same timestamp costs no decay step; only the last price of the burst
+// is carried into the next interval. Timestamps that go backwards are treated as dt = 0.
+public class TimeDecayEMA {
+
+    private final double tauNanos;
+    private double mean;
+    private double lastPrice;
+    private long lastTimestamp;
+    private boolean started;
+
+    // exp() of the last interval, reused while ticks keep arriving at the same spacing
+    private long cachedDt = -1;
+    private double cachedDecay;
+
+    // tauNanos: time constant; the weight of a price falls to 1/e after tauNanos
+    public TimeDecayEMA(long tauNanos) {
+        if (tauNanos <= 0) {
+            throw new IllegalArgumentException("tauNanos must be positive");
+        }
+        this.tauNanos = tauNanos;
+    }
+
+    public void addData(long timestampNanos, double price) {
+        if (!started) {
+            started = true;
+            mean = price;
+            lastTimestamp = timestampNanos;
+        } else {
+            long dt = timestampNanos - lastTimestamp;
+            if (dt > 0) {
+                mean = lastPrice + decay(dt) * (mean - lastPrice);
+                lastTimestamp = timestampNanos;
+            }
+        }
+        lastPrice = price;
+    }
+
+    private double decay(long dt) {
+        if (dt != cachedDt) {
+            cachedDt = dt;
+            cachedDecay = Math.exp(-dt / tauNanos);
+        }
+        return cachedDecay;
+    }
+
+    // mean as of the last tick's timestamp; the last price enters it as time moves on
+    public double getMean() {
+        return mean;
+    }
+
+    // mean carried forward to nowNanos, including the last price held since the last tick
+    public double getMean(long nowNanos) {
+        long dt = nowNanos - lastTimestamp;
+        if (!started || dt <= 0) {
+            return mean;
+        }
+        return lastPrice + Math.exp(-dt / tauNanos) * (mean - lastPrice);
+    }
+
+    public long getLastTimestamp() {
+        return lastTimestamp;
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+}
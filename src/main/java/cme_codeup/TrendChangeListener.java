@@ -0,0 +1,9 @@
+package cme_codeup;
+
+// Push notification from EMATrend / DEMATrend when the trend direction changes, including the
+// first move out of NA once both windows have filled. Called on the thread that added the sample,
+// while it holds the trend's monitor: keep it short and do not add samples from inside it.
+@FunctionalInterface
+public interface TrendChangeListener {
+    void onTrendChange(TrendResult.Direction previous, TrendResult.Direction current, double ratio);
+}
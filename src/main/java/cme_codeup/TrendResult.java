@@ -0,0 +1,54 @@
+package cme_codeup;
+
+// Caller-owned holder for one trend evaluation: direction and short/long ratio together.
+// The trend classes fill it in place through getTrend(TrendResult), so evaluating on every tick
+// allocates nothing and, unlike ETrend.setTrendValue, shares no state between instances or threads.
+public final class TrendResult {
+
+    public enum Direction {
+        UP,
+        DOWN,
+        FLAT,
+        NA
+    }
+
+    private Direction direction = Direction.NA;
+    private double ratio = Double.NaN;
+
+    public Direction getDirection() {
+        return direction;
+    }
+
+    // short mean / long mean, NaN when the direction is NA
+    public double getRatio() {
+        return ratio;
+    }
+
+    // ratios within flatRange of 1 are FLAT; with flatRange = 0 this is the original diff > 1 / diff < 1 split
+    public static Direction classify(double ratio, double flatRange) {
+        if (ratio > 1 + flatRange) {
+            return Direction.UP;
+        } else if (ratio < 1 - flatRange) {
+            return Direction.DOWN;
+        } else {
+            return Direction.FLAT;
+        }
+    }
+
+    TrendResult set(double ratio, double flatRange) {
+        this.direction = classify(ratio, flatRange);
+        this.ratio = ratio;
+        return this;
+    }
+
+    TrendResult setNA() {
+        this.direction = Direction.NA;
+        this.ratio = Double.NaN;
+        return this;
+    }
+
+    @Override
+    public String toString() {
+        return direction + "(" + ratio + ")";
+    }
+}